@@ -19,11 +19,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.UUID;
 
 @Component
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    // id пользователя из токена, чтобы частые эндпоинты не искали его в БД по email
+    public static final String USER_ID_ATTRIBUTE = "mytube.userId";
+
     private final JwtConfig jwtConfig;
     private UserService userService;
 
@@ -65,6 +69,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     );
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+
+                    String userId = jwtConfig.extractUserId(jwt);
+                    if (userId != null) {
+                        request.setAttribute(USER_ID_ATTRIBUTE, UUID.fromString(userId));
+                    }
                 }
             }
         } catch (ExpiredJwtException e) {
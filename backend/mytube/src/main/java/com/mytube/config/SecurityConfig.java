@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -72,6 +73,18 @@ public class SecurityConfig {
                                 "/v3/api-docs/**",
                                 "/actuator/**"
                         ).permitAll()
+                        // Heartbeat'ы плеера шлют и анонимные зрители
+                        .requestMatchers(HttpMethod.POST, "/api/videos/*/heartbeat").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/videos/*/watching", "/api/videos/*/comments", "/api/videos/*/live",
+                                "/api/videos/*/tags", "/api/videos/*/related",
+                                "/api/videos/*/also-watched").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/comments/*/replies").permitAll()
+                        // "Смотреть позже" личный, хотя путь попадает под публичные GET плейлистов
+                        .requestMatchers("/api/playlists/watch-later", "/api/playlists/watch-later/**").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/videos", "/api/videos/trending", "/api/channels/*/videos",
+                                "/api/channels/*/page",
+                                "/api/playlists/*", "/api/playlists/*/videos", "/api/playlists/*/up-next",
+                                "/api/search/**").permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/moderator/**").hasAnyRole("MODERATOR", "ADMIN")
                         .anyRequest().authenticated()
@@ -0,0 +1,47 @@
+package com.mytube.controller;
+
+import com.mytube.service.SearchIndexClient;
+import com.mytube.service.SearchIndexer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Обслуживание поискового индекса, доступно только ADMIN (см. SecurityConfig)
+@RestController
+@RequestMapping("/api/admin/search")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class AdminSearchController {
+
+    private final SearchIndexer searchIndexer;
+
+    // Полная переиндексация в новый индекс с переключением алиаса; идет в фоне
+    @PostMapping("/{index}/reindex")
+    public ResponseEntity<?> reindex(@PathVariable String index) {
+        try {
+            SearchIndexClient.SearchIndex target = SearchIndexClient.SearchIndex.valueOf(index.toUpperCase());
+            if (!searchIndexer.startReindex(target)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(createErrorResponse("Reindex of " + index + " is already running"));
+            }
+            return ResponseEntity.accepted().build();
+
+        } catch (Exception e) {
+            log.error("Failed to start reindex: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to start reindex: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
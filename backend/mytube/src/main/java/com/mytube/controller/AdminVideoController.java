@@ -0,0 +1,42 @@
+package com.mytube.controller;
+
+import com.mytube.service.VideoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Служебные операции над видео, доступны только ADMIN (см. SecurityConfig)
+@RestController
+@RequestMapping("/api/admin/videos")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class AdminVideoController {
+
+    private final VideoService videoService;
+
+    // Вызывается пайплайном обработки, когда видео готово к показу
+    @PostMapping("/{videoId}/ready")
+    public ResponseEntity<?> markReady(@PathVariable UUID videoId) {
+        try {
+            videoService.markReady(videoId);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to mark video ready: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to mark video ready: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
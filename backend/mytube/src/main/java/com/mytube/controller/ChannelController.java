@@ -0,0 +1,107 @@
+package com.mytube.controller;
+
+import com.mytube.config.JwtAuthenticationFilter;
+import com.mytube.service.ChannelSummaryService;
+import com.mytube.service.SubscriptionService;
+import com.mytube.service.VideoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/channels")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class ChannelController {
+
+    private static final int MAX_STATUS_LOOKUP_IDS = 200;
+
+    private final SubscriptionService subscriptionService;
+    private final VideoService videoService;
+    private final ChannelSummaryService channelSummaryService;
+
+    // If-None-Match сверяет Spring по выставленному ETag и при совпадении отвечает 304 без тела
+    @GetMapping("/{channelId}/page")
+    public ResponseEntity<?> getChannelPage(@PathVariable UUID channelId) {
+        try {
+            ChannelSummaryService.Summary summary = channelSummaryService.getSummary(channelId);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(summary.etag())
+                    .body(summary.body());
+
+        } catch (Exception e) {
+            log.error("Failed to get channel page: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get channel page: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{channelId}/videos")
+    public ResponseEntity<?> getChannelVideos(@PathVariable UUID channelId,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(videoService.getChannelVideos(channelId, cursor, limit));
+
+        } catch (Exception e) {
+            log.error("Failed to get channel videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get channel videos: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{channelId}/subscription")
+    public ResponseEntity<?> subscribe(@PathVariable UUID channelId,
+                                       @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        try {
+            subscriptionService.subscribe(userId, channelId);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to subscribe: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to subscribe: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{channelId}/subscription")
+    public ResponseEntity<?> unsubscribe(@PathVariable UUID channelId,
+                                         @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        try {
+            subscriptionService.unsubscribe(userId, channelId);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to unsubscribe: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to unsubscribe: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/subscriptions/status")
+    public ResponseEntity<?> getSubscriptionStatuses(@RequestParam("ids") List<UUID> ids,
+                                                     @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        if (ids.size() > MAX_STATUS_LOOKUP_IDS) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Too many ids, max " + MAX_STATUS_LOOKUP_IDS));
+        }
+        return ResponseEntity.ok(subscriptionService.getSubscriptionStatuses(userId, ids));
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
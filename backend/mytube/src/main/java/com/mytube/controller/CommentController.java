@@ -0,0 +1,111 @@
+package com.mytube.controller;
+
+import com.mytube.config.JwtAuthenticationFilter;
+import com.mytube.dto.CommentDTO;
+import com.mytube.dto.ReactionDTO;
+import com.mytube.exception.VideoNotFoundException;
+import com.mytube.service.CommentService;
+import com.mytube.service.ReactionService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/comments")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class CommentController {
+
+    private static final int MAX_REACTION_LOOKUP_IDS = 200;
+
+    private final ReactionService reactionService;
+    private final CommentService commentService;
+
+    @PutMapping("/{commentId}/reaction")
+    public ResponseEntity<?> react(@PathVariable UUID commentId,
+                                   @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                   @Valid @RequestBody ReactionDTO.ReactionRequest request) {
+        try {
+            return ResponseEntity.ok(reactionService.reactToComment(userId, commentId, request.getReaction()));
+
+        } catch (Exception e) {
+            log.error("Failed to react to comment: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to react to comment: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{commentId}/replies")
+    public ResponseEntity<?> getReplies(@PathVariable UUID commentId,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "20") int limit,
+                                        @RequestParam(defaultValue = "3") int depth,
+                                        @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId) {
+        try {
+            return ResponseEntity.ok(commentService.getReplies(commentId, cursor, limit, depth, userId));
+
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse("Comment not found"));
+
+        } catch (Exception e) {
+            log.error("Failed to get replies: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get replies: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{commentId}")
+    public ResponseEntity<?> delete(@PathVariable UUID commentId,
+                                    @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        try {
+            commentService.deleteComment(userId, commentId);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to delete comment: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to delete comment: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{commentId}/pin")
+    public ResponseEntity<?> pin(@PathVariable UUID commentId,
+                                 @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                 @Valid @RequestBody CommentDTO.PinRequest request) {
+        try {
+            commentService.setPinned(userId, commentId, request.getPinned());
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to pin comment: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to pin comment: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reactions")
+    public ResponseEntity<?> getReactions(@RequestParam("ids") List<UUID> ids,
+                                          @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        if (ids.size() > MAX_REACTION_LOOKUP_IDS) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Too many ids, max " + MAX_REACTION_LOOKUP_IDS));
+        }
+        return ResponseEntity.ok(reactionService.getCommentReactions(userId, ids));
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mytube.controller;
+
+import com.mytube.config.JwtAuthenticationFilter;
+import com.mytube.service.FeedService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/feed")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class FeedController {
+
+    private final FeedService feedService;
+
+    @GetMapping("/subscriptions")
+    public ResponseEntity<?> getSubscriptionFeed(@RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(feedService.getSubscriptionFeed(userId, cursor, limit));
+
+        } catch (Exception e) {
+            log.error("Failed to get subscription feed: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get subscription feed: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mytube.controller;
+
+import com.mytube.config.JwtAuthenticationFilter;
+import com.mytube.dto.PlaylistDTO;
+import com.mytube.service.PlaylistPlaybackService;
+import com.mytube.service.PlaylistService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/playlists")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class PlaylistController {
+
+    private final PlaylistService playlistService;
+    private final PlaylistPlaybackService playlistPlaybackService;
+
+    @PostMapping
+    public ResponseEntity<?> createPlaylist(@RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                            @Valid @RequestBody PlaylistDTO.CreatePlaylistRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(playlistService.createPlaylist(userId, request));
+
+        } catch (Exception e) {
+            log.error("Failed to create playlist: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to create playlist: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/watch-later")
+    public ResponseEntity<?> getWatchLater(@RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        try {
+            return ResponseEntity.ok(playlistService.getWatchLater(userId));
+
+        } catch (Exception e) {
+            log.error("Failed to get watch later: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get watch later: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/watch-later/videos")
+    public ResponseEntity<?> getWatchLaterItems(@RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(playlistService.getItems(playlistService.watchLaterId(userId), userId, cursor, limit));
+
+        } catch (Exception e) {
+            log.error("Failed to get watch later videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get watch later videos: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/watch-later/videos")
+    public ResponseEntity<?> addToWatchLater(@RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                             @Valid @RequestBody PlaylistDTO.BulkRequest request) {
+        try {
+            return ResponseEntity.ok(playlistService.addVideos(userId, playlistService.watchLaterId(userId), request));
+
+        } catch (Exception e) {
+            log.error("Failed to add to watch later: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to add to watch later: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/watch-later/videos/bulk-delete")
+    public ResponseEntity<?> removeFromWatchLater(@RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                                  @Valid @RequestBody PlaylistDTO.BulkRequest request) {
+        try {
+            return ResponseEntity.ok(playlistService.removeVideos(userId, playlistService.watchLaterId(userId), request));
+
+        } catch (Exception e) {
+            log.error("Failed to remove from watch later: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to remove from watch later: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{playlistId}")
+    public ResponseEntity<?> getPlaylist(@PathVariable UUID playlistId,
+                                         @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId) {
+        try {
+            return ResponseEntity.ok(playlistService.getPlaylist(playlistId, userId));
+
+        } catch (Exception e) {
+            log.error("Failed to get playlist: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get playlist: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{playlistId}/videos")
+    public ResponseEntity<?> getItems(@PathVariable UUID playlistId,
+                                      @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(playlistService.getItems(playlistId, userId, cursor, limit));
+
+        } catch (Exception e) {
+            log.error("Failed to get playlist videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get playlist videos: " + e.getMessage()));
+        }
+    }
+
+    // Следующие видео после текущего с манифестами, для предзагрузки в плеере
+    @GetMapping("/{playlistId}/up-next")
+    public ResponseEntity<?> getUpNext(@PathVariable UUID playlistId,
+                                       @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId,
+                                       @RequestParam(required = false) UUID videoId,
+                                       @RequestParam(defaultValue = "3") int limit,
+                                       @RequestParam(defaultValue = "false") boolean shuffle,
+                                       @RequestParam(required = false) Long seed) {
+        try {
+            return ResponseEntity.ok(playlistPlaybackService.getUpNext(playlistId, userId, videoId, limit, shuffle, seed));
+
+        } catch (Exception e) {
+            log.error("Failed to get up next: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get up next: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{playlistId}/videos")
+    public ResponseEntity<?> addVideo(@PathVariable UUID playlistId,
+                                      @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                      @Valid @RequestBody PlaylistDTO.AddVideoRequest request) {
+        try {
+            playlistService.addVideo(userId, playlistId, request);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to add video to playlist: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to add video to playlist: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{playlistId}/videos/bulk")
+    public ResponseEntity<?> addVideos(@PathVariable UUID playlistId,
+                                       @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                       @Valid @RequestBody PlaylistDTO.BulkRequest request) {
+        try {
+            return ResponseEntity.ok(playlistService.addVideos(userId, playlistId, request));
+
+        } catch (Exception e) {
+            log.error("Failed to add videos to playlist: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to add videos to playlist: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{playlistId}/videos/bulk-delete")
+    public ResponseEntity<?> removeVideos(@PathVariable UUID playlistId,
+                                          @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                          @Valid @RequestBody PlaylistDTO.BulkRequest request) {
+        try {
+            return ResponseEntity.ok(playlistService.removeVideos(userId, playlistId, request));
+
+        } catch (Exception e) {
+            log.error("Failed to remove playlist videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to remove playlist videos: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{playlistId}/videos/order")
+    public ResponseEntity<?> moveVideos(@PathVariable UUID playlistId,
+                                        @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                        @Valid @RequestBody PlaylistDTO.BulkRequest request) {
+        try {
+            return ResponseEntity.ok(playlistService.moveVideos(userId, playlistId, request));
+
+        } catch (Exception e) {
+            log.error("Failed to reorder playlist videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to reorder playlist videos: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{playlistId}/videos/{videoId}/position")
+    public ResponseEntity<?> moveVideo(@PathVariable UUID playlistId,
+                                       @PathVariable UUID videoId,
+                                       @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                       @RequestBody PlaylistDTO.PositionRequest request) {
+        try {
+            playlistService.moveVideo(userId, playlistId, videoId, request);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to move playlist video: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to move playlist video: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{playlistId}/videos/{videoId}")
+    public ResponseEntity<?> removeVideo(@PathVariable UUID playlistId,
+                                         @PathVariable UUID videoId,
+                                         @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        try {
+            playlistService.removeVideo(userId, playlistId, videoId);
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to remove playlist video: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to remove playlist video: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
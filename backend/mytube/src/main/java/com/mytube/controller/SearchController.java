@@ -0,0 +1,71 @@
+package com.mytube.controller;
+
+import com.mytube.config.JwtAuthenticationFilter;
+import com.mytube.dto.SearchDTO;
+import com.mytube.exception.SearchUnavailableException;
+import com.mytube.service.SearchService;
+import com.mytube.service.SuggestionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class SearchController {
+
+    private final SearchService searchService;
+    private final SuggestionService suggestionService;
+
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(@RequestParam String q,
+                                     @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(suggestionService.suggest(q, limit));
+    }
+
+    @GetMapping("/videos")
+    public ResponseEntity<?> searchVideos(@RequestParam String q,
+                                          @RequestParam(required = false) UUID channelId,
+                                          @RequestParam(required = false) Integer minDuration,
+                                          @RequestParam(required = false) Integer maxDuration,
+                                          @RequestParam(required = false) SearchDTO.UploadDate uploadDate,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int limit,
+                                          @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId,
+                                          HttpServletRequest httpRequest) {
+        try {
+            SearchDTO.VideoQuery query = SearchDTO.VideoQuery.builder()
+                    .text(q)
+                    .channelId(channelId)
+                    .minDurationSeconds(minDuration)
+                    .maxDurationSeconds(maxDuration)
+                    .uploadDate(uploadDate)
+                    .build();
+            return ResponseEntity.ok(searchService.searchVideos(query, cursor, limit, userId, httpRequest.getRemoteAddr()));
+
+        } catch (SearchUnavailableException e) {
+            log.error("Search is unavailable: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(createErrorResponse("Search is temporarily unavailable"));
+        } catch (Exception e) {
+            log.error("Failed to search videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to search videos: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
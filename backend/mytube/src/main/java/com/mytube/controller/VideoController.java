@@ -0,0 +1,275 @@
+package com.mytube.controller;
+
+import com.mytube.config.JwtAuthenticationFilter;
+import com.mytube.exception.RateLimitExceededException;
+import com.mytube.exception.VideoNotFoundException;
+import com.mytube.dto.CommentDTO;
+import com.mytube.dto.ReactionDTO;
+import com.mytube.dto.VideoDTO;
+import com.mytube.service.CommentRankingService;
+import com.mytube.service.CoViewService;
+import com.mytube.service.CommentService;
+import com.mytube.service.HomeFeedCache;
+import com.mytube.service.LiveUpdateService;
+import com.mytube.service.ReactionService;
+import com.mytube.service.RelatedVideoService;
+import com.mytube.service.TagService;
+import com.mytube.service.TrendingService;
+import com.mytube.service.VideoService;
+import com.mytube.service.ViewerPresenceService;
+import com.mytube.service.WatchTimeService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/videos")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class VideoController {
+
+    private static final int MAX_REACTION_LOOKUP_IDS = 200;
+
+    private final WatchTimeService watchTimeService;
+    private final ViewerPresenceService viewerPresenceService;
+    private final ReactionService reactionService;
+    private final CommentService commentService;
+    private final CommentRankingService commentRankingService;
+    private final LiveUpdateService liveUpdateService;
+    private final VideoService videoService;
+    private final HomeFeedCache homeFeedCache;
+    private final TagService tagService;
+    private final RelatedVideoService relatedVideoService;
+    private final CoViewService coViewService;
+    private final TrendingService trendingService;
+
+    @GetMapping
+    public ResponseEntity<?> getPublicVideos(@RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(homeFeedCache.getPage(cursor, limit));
+
+        } catch (Exception e) {
+            log.error("Failed to get videos: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get videos: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/trending")
+    public ResponseEntity<?> getTrending(@RequestParam(required = false) String tag,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(trendingService.getTrending(tag, limit));
+    }
+
+    @PostMapping("/{videoId}/heartbeat")
+    public ResponseEntity<?> heartbeat(@PathVariable UUID videoId,
+                                       @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId,
+                                       @Valid @RequestBody VideoDTO.HeartbeatRequest request,
+                                       HttpServletRequest httpRequest) {
+        try {
+            watchTimeService.recordHeartbeat(request.getSessionId(), videoId, userId,
+                    request.getPositionSeconds(), request.isEnded(),
+                    httpRequest.getRemoteAddr(), httpRequest.getHeader(HttpHeaders.USER_AGENT));
+
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+
+        } catch (RateLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (e.getRetryAfterMillis() + 999) / 1000)))
+                    .body(createErrorResponse(e.getMessage()));
+        }
+
+        if (request.isEnded()) {
+            viewerPresenceService.leave(videoId, request.getSessionId());
+        } else {
+            viewerPresenceService.touch(videoId, request.getSessionId());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{videoId}/watching")
+    public ResponseEntity<?> getWatchingNow(@PathVariable UUID videoId) {
+        return ResponseEntity.ok(VideoDTO.WatchingNow.builder()
+                .videoId(videoId)
+                .watching(viewerPresenceService.getWatchingNow(videoId))
+                .build());
+    }
+
+    @GetMapping("/{videoId}/live")
+    public ResponseEntity<?> live(@PathVariable UUID videoId,
+                                  @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId) {
+        try {
+            // Поток несет тексты новых комментариев: подписка только на видимые зрителю видео
+            videoService.requireViewable(videoId, userId);
+            return ResponseEntity.ok(liveUpdateService.subscribe(videoId));
+
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+
+        } catch (IllegalStateException e) {
+            log.warn("Live connection rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{videoId}/resume")
+    public ResponseEntity<?> getResumePosition(@PathVariable UUID videoId,
+                                               @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        try {
+            int position = watchTimeService.getResumePosition(userId, videoId).orElse(0);
+            return ResponseEntity.ok(VideoDTO.ResumePosition.builder()
+                    .videoId(videoId)
+                    .positionSeconds(position)
+                    .build());
+
+        } catch (Exception e) {
+            log.error("Failed to get resume position: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to get resume position"));
+        }
+    }
+
+    @PutMapping("/{videoId}/reaction")
+    public ResponseEntity<?> react(@PathVariable UUID videoId,
+                                   @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                   @Valid @RequestBody ReactionDTO.ReactionRequest request) {
+        try {
+            return ResponseEntity.ok(reactionService.reactToVideo(userId, videoId, request.getReaction()));
+
+        } catch (Exception e) {
+            log.error("Failed to react to video: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to react to video: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{videoId}/visibility")
+    public ResponseEntity<?> updateVisibility(@PathVariable UUID videoId,
+                                              @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                              @Valid @RequestBody VideoDTO.VisibilityRequest request) {
+        try {
+            videoService.updateVisibility(userId, videoId, request.getVisibility());
+            return ResponseEntity.noContent().build();
+
+        } catch (Exception e) {
+            log.error("Failed to update video visibility: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to update video visibility: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{videoId}/tags")
+    public ResponseEntity<?> getTags(@PathVariable UUID videoId,
+                                     @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId) {
+        try {
+            return ResponseEntity.ok(tagService.getVideoTags(videoId, userId));
+
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{videoId}/tags")
+    public ResponseEntity<?> setTags(@PathVariable UUID videoId,
+                                     @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                     @Valid @RequestBody VideoDTO.TagsRequest request) {
+        try {
+            return ResponseEntity.ok(tagService.setVideoTags(userId, videoId, request.getTags()));
+
+        } catch (Exception e) {
+            log.error("Failed to set video tags: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to set video tags: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{videoId}/related")
+    public ResponseEntity<?> getRelated(@PathVariable UUID videoId,
+                                        @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(relatedVideoService.getRelatedVideos(videoId, limit));
+    }
+
+    @GetMapping("/{videoId}/also-watched")
+    public ResponseEntity<?> getAlsoWatched(@PathVariable UUID videoId,
+                                            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(coViewService.getAlsoWatched(videoId, limit));
+    }
+
+    @GetMapping("/{videoId}/comments")
+    public ResponseEntity<?> getComments(@PathVariable UUID videoId,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit,
+                                         @RequestParam(defaultValue = "new") String sort,
+                                         @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE, required = false) UUID userId) {
+        try {
+            if ("top".equalsIgnoreCase(sort)) {
+                return ResponseEntity.ok(commentRankingService.getTopComments(videoId, cursor, limit, userId));
+            }
+            return ResponseEntity.ok(commentService.getRootComments(videoId, cursor, limit, userId));
+
+        } catch (VideoNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{videoId}/comments")
+    public ResponseEntity<?> createComment(@PathVariable UUID videoId,
+                                           @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+                                           @Valid @RequestBody CommentDTO.CreateCommentRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(commentService.createComment(userId, videoId, request.getParentId(), request.getContent()));
+
+        } catch (RateLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (e.getRetryAfterMillis() + 999) / 1000)))
+                    .body(createErrorResponse(e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Failed to create comment: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to create comment: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reactions")
+    public ResponseEntity<?> getReactions(@RequestParam("ids") List<UUID> ids,
+                                          @RequestAttribute(name = JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId) {
+        if (ids.size() > MAX_REACTION_LOOKUP_IDS) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Too many ids, max " + MAX_REACTION_LOOKUP_IDS));
+        }
+        return ResponseEntity.ok(reactionService.getVideoReactions(userId, ids));
+    }
+
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return errorResponse;
+    }
+}
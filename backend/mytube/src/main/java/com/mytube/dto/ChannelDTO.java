@@ -0,0 +1,29 @@
+package com.mytube.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+public class ChannelDTO {
+
+    /**
+     * Все, что нужно странице канала при открытии: шапка, последнее видео, плейлисты и первая
+     * страница видео. Следующие страницы видео - через /api/channels/{id}/videos с nextCursor.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChannelPage {
+        private UserDTO.ChannelInfo channel;
+        private String ownerUsername;
+        private String ownerAvatarUrl;
+        private String bannerUrl;
+        private VideoDTO.VideoCard latestUpload;
+        private List<PlaylistDTO.PlaylistInfo> playlists;
+        private CursorPage<VideoDTO.VideoCard> videos;
+    }
+}
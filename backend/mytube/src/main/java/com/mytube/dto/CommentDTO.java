@@ -0,0 +1,65 @@
+package com.mytube.dto;
+
+import com.mytube.entity.enums.ReactionType;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public class CommentDTO {
+
+    @Data
+    @Builder(toBuilder = true)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CommentItem {
+        private UUID id;
+        private UUID parentId;
+        private Integer depth;
+        private String content;
+        private Long likeCount;
+        private Long dislikeCount;
+        private Boolean isPinned;
+        private LocalDateTime createdAt;
+        private Long replyCount;
+        private AuthorSummary author;
+        private ReactionType myReaction;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AuthorSummary {
+        private UUID id;
+        private String username;
+        private String avatarUrl;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CreateCommentRequest {
+        @NotBlank
+        @Size(max = 10000)
+        private String content;
+
+        private UUID parentId;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PinRequest {
+        @NotNull
+        private Boolean pinned;
+    }
+}
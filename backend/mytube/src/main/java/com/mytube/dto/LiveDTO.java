@@ -0,0 +1,61 @@
+package com.mytube.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public class LiveDTO {
+
+    // Сообщение между узлами через Redis pub/sub
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Envelope {
+        private String type;
+        private UUID videoId;
+        private JsonNode data;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NewComment {
+        private UUID id;
+        private UUID parentId;
+        private String content;
+        private LocalDateTime createdAt;
+        private CommentDTO.AuthorSummary author;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CommentCounters {
+        private UUID commentId;
+        private Long likeCount;
+        private Long dislikeCount;
+        private Boolean isPinned;
+    }
+
+    // Поля, которые не менялись за интервал, не отправляются
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class VideoCounters {
+        private UUID videoId;
+        private Long likeCount;
+        private Long dislikeCount;
+        private Long viewCount;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mytube.dto;
+
+import com.mytube.entity.enums.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+public class NotificationDTO {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NotificationItem {
+        private Long id;
+        private NotificationType type;
+        private Boolean isRead;
+        private LocalDateTime createdAt;
+        // Карточка видео; null, если видео с тех пор скрыто
+        private VideoDTO.VideoCard video;
+    }
+}
@@ -0,0 +1,128 @@
+package com.mytube.dto;
+
+import com.mytube.entity.enums.SystemPlaylistType;
+import com.mytube.entity.enums.VideoVisibility;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public class PlaylistDTO {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CreatePlaylistRequest {
+        @NotBlank
+        @Size(max = 255)
+        private String title;
+
+        @Size(max = 5000)
+        private String description;
+
+        private VideoVisibility visibility;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PlaylistInfo {
+        private UUID id;
+        private UUID channelId;
+        private SystemPlaylistType systemType;
+        private String title;
+        private String description;
+        private VideoVisibility visibility;
+        private Integer videoCount;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+    }
+
+    /**
+     * Куда поставить видео: сразу после afterVideoId или сразу перед beforeVideoId;
+     * если не указано ни то ни другое - в конец плейлиста.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PositionRequest {
+        private UUID afterVideoId;
+        private UUID beforeVideoId;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AddVideoRequest {
+        @NotNull
+        private UUID videoId;
+
+        private UUID afterVideoId;
+        private UUID beforeVideoId;
+    }
+
+    /**
+     * Пакетная операция над плейлистом. Для добавления и переноса порядок videoIds задает порядок
+     * элементов, а afterVideoId/beforeVideoId - место вставки, как в PositionRequest.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkRequest {
+        @NotEmpty
+        @Size(max = 1000)
+        private List<@NotNull UUID> videoIds;
+
+        private UUID afterVideoId;
+        private UUID beforeVideoId;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkResult {
+        // Сколько строк реально изменилось; уже добавленные или отсутствующие видео не считаются
+        private Integer affected;
+        // Видео, которых нет или которые нельзя добавить (приватные, не готовые)
+        private List<UUID> rejectedVideoIds;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UpNextItem {
+        private UUID videoId;
+        private String title;
+        private String thumbnailUrl;
+        private Integer durationSeconds;
+        // DASH-манифест: плеер начинает буферизацию следующего видео до окончания текущего
+        private String dashPlaylistPath;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UpNext {
+        private List<UpNextItem> items;
+        // Seed перемешивания; клиент передает его обратно, чтобы порядок не менялся в течение сессии
+        private Long shuffleSeed;
+        // Окно кончилось на последнем элементе плейлиста
+        private boolean endOfPlaylist;
+    }
+}
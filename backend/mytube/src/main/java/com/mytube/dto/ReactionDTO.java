@@ -0,0 +1,31 @@
+package com.mytube.dto;
+
+import com.mytube.entity.enums.ReactionType;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+public class ReactionDTO {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReactionRequest {
+        @NotNull
+        private ReactionType reaction;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReactionResult {
+        private ReactionType previous;
+        private ReactionType current;
+        private Long likeCount;
+        private Long dislikeCount;
+    }
+}
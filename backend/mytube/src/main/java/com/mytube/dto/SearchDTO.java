@@ -0,0 +1,41 @@
+package com.mytube.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+public class SearchDTO {
+
+    // Период загрузки в терминах date math Elasticsearch
+    public enum UploadDate {
+        HOUR("now-1h"), TODAY("now/d"), WEEK("now-7d/d"), MONTH("now-30d/d"), YEAR("now-365d/d");
+
+        private final String from;
+
+        UploadDate(String from) {
+            this.from = from;
+        }
+
+        public String from() {
+            return from;
+        }
+    }
+
+    /**
+     * Запрос поиска видео. Служит и ключом кэша, поэтому текст нормализуется до построения.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VideoQuery {
+        private String text;
+        private UUID channelId;
+        private Integer minDurationSeconds;
+        private Integer maxDurationSeconds;
+        private UploadDate uploadDate;
+    }
+}
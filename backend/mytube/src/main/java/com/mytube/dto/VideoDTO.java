@@ -0,0 +1,86 @@
+package com.mytube.dto;
+
+import com.mytube.entity.enums.VideoVisibility;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public class VideoDTO {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HeartbeatRequest {
+        @NotBlank
+        @Size(max = 100)
+        private String sessionId;
+
+        @NotNull
+        @Min(0)
+        private Integer positionSeconds;
+
+        private boolean ended;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VisibilityRequest {
+        @NotNull
+        private VideoVisibility visibility;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TagsRequest {
+        @NotNull
+        private List<String> tags;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ResumePosition {
+        private UUID videoId;
+        private Integer positionSeconds;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WatchingNow {
+        private UUID videoId;
+        private Long watching;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VideoCard {
+        private UUID id;
+        private String title;
+        private String thumbnailUrl;
+        private Integer durationSeconds;
+        private Long viewCount;
+        private LocalDateTime publishedAt;
+        private UUID channelId;
+        private String channelName;
+        private String channelAvatarUrl;
+    }
+}
@@ -9,7 +9,6 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.UUID;
 
 @Entity
@@ -35,18 +34,30 @@ public class Comment {
     @JoinColumn(name = "parent_comment_id")
     private Comment parentComment;
 
+    // Для корневого комментария совпадает с id
+    @Column(name = "root_id", nullable = false)
+    private UUID rootId;
+
+    // Материализованный путь от корня, см. ddl.sql
+    @Column(nullable = false, columnDefinition = "TEXT COLLATE \"C\"")
+    private String path;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer depth = 0;
+
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
-    @Column(name = "like_count")
+    @Column(name = "like_count", nullable = false)
     @Builder.Default
     private Long likeCount = 0L;
 
-    @Column(name = "dislike_count")
+    @Column(name = "dislike_count", nullable = false)
     @Builder.Default
     private Long dislikeCount = 0L;
 
-    @Column(name = "is_pinned")
+    @Column(name = "is_pinned", nullable = false)
     @Builder.Default
     private Boolean isPinned = false;
 
@@ -57,7 +68,4 @@ public class Comment {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
-
-    @OneToMany(mappedBy = "parentComment", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private List<Comment> replies;
 }
@@ -0,0 +1,52 @@
+package com.mytube.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "daily_video_stats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyVideoStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "video_id", nullable = false)
+    private Video video;
+
+    @Column(name = "date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "view_count")
+    @Builder.Default
+    private Long viewCount = 0L;
+
+    @Column(name = "unique_viewers")
+    @Builder.Default
+    private Long uniqueViewers = 0L;
+
+    @Column(name = "average_watch_time")
+    @Builder.Default
+    private Double averageWatchTime = 0.0;
+
+    @Column(name = "like_count")
+    @Builder.Default
+    private Long likeCount = 0L;
+
+    @Column(name = "dislike_count")
+    @Builder.Default
+    private Long dislikeCount = 0L;
+
+    @Column(name = "comment_count")
+    @Builder.Default
+    private Long commentCount = 0L;
+}
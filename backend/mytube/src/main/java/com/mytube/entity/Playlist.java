@@ -1,5 +1,6 @@
 package com.mytube.entity;
 
+import com.mytube.entity.enums.SystemPlaylistType;
 import com.mytube.entity.enums.VideoVisibility;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -23,10 +24,18 @@ public class Playlist {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
 
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // У системных плейлистов (например, "Смотреть позже") канала нет
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "channel_id", nullable = false)
+    @JoinColumn(name = "channel_id")
     private Channel channel;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "system_type", length = 20)
+    private SystemPlaylistType systemType;
+
     @Column(nullable = false)
     private String title;
 
@@ -0,0 +1,37 @@
+package com.mytube.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "playlist_videos")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaylistVideo {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "playlist_id", nullable = false)
+    private UUID playlistId;
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+
+    // Разреженная позиция: порядок задается только сравнением, значения не обязаны идти подряд
+    @Column(nullable = false)
+    private Long position;
+
+    @CreationTimestamp
+    @Column(name = "added_at")
+    private LocalDateTime addedAt;
+}
@@ -39,7 +39,7 @@ public class VideoView {
     private Integer watchTimeSeconds = 0;
 
     @CreationTimestamp
-    @Column(name = "viewed_at")
+    @Column(name = "viewed_at", nullable = false)
     private LocalDateTime viewedAt;
 
     @Column(name = "session_id", length = 100)
@@ -0,0 +1,5 @@
+package com.mytube.entity.enums;
+
+public enum NotificationType {
+    NEW_VIDEO
+}
@@ -0,0 +1,24 @@
+package com.mytube.entity.enums;
+
+public enum ReactionType {
+    LIKE(1), DISLIKE(-1), NONE(0);
+
+    // Код совпадает с тем, что возвращают нативные запросы реакций
+    private final int code;
+
+    ReactionType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static ReactionType fromCode(int code) {
+        return code > 0 ? LIKE : code < 0 ? DISLIKE : NONE;
+    }
+
+    public static ReactionType fromIsLike(Boolean isLike) {
+        return isLike == null ? NONE : isLike ? LIKE : DISLIKE;
+    }
+}
@@ -0,0 +1,5 @@
+package com.mytube.entity.enums;
+
+public enum SystemPlaylistType {
+    WATCH_LATER
+}
@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Изменилось то, что видно в шапке канала: данные владельца или список плейлистов
+public record ChannelChangedEvent(UUID channelId) {
+}
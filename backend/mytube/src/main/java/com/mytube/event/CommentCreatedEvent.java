@@ -0,0 +1,14 @@
+package com.mytube.event;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record CommentCreatedEvent(UUID commentId,
+                                  UUID videoId,
+                                  UUID parentId,
+                                  UUID authorId,
+                                  String authorUsername,
+                                  String authorAvatarUrl,
+                                  String content,
+                                  LocalDateTime createdAt) {
+}
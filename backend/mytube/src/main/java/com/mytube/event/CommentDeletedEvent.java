@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Удален комментарий вместе с веткой ответов; removed - сколько всего строк удалено
+public record CommentDeletedEvent(UUID commentId, UUID videoId, UUID parentId, long removed) {
+}
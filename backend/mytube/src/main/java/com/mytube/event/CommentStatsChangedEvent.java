@@ -0,0 +1,14 @@
+package com.mytube.event;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Изменились лайки или закрепление комментария
+public record CommentStatsChangedEvent(UUID commentId,
+                                       UUID videoId,
+                                       UUID parentId,
+                                       boolean pinned,
+                                       long likeCount,
+                                       long dislikeCount,
+                                       LocalDateTime createdAt) {
+}
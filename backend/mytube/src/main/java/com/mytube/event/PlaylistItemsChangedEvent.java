@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Изменился состав или порядок видео в плейлисте
+public record PlaylistItemsChangedEvent(UUID playlistId) {
+}
@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Подписка действительно добавлена (subscribed = true) или удалена
+public record SubscriptionChangedEvent(UUID subscriberId, UUID channelId, boolean subscribed) {
+}
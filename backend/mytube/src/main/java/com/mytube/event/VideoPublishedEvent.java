@@ -0,0 +1,8 @@
+package com.mytube.event;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Видео впервые стало публичным и готовым к просмотру
+public record VideoPublishedEvent(UUID videoId, UUID channelId, LocalDateTime publishedAt) {
+}
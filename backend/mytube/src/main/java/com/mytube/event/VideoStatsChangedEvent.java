@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Изменились лайки/дизлайки видео; liked - пользователь userId поставил лайк (а не снял или дизлайкнул)
+public record VideoStatsChangedEvent(UUID videoId, UUID userId, long likeCount, long dislikeCount, boolean liked) {
+}
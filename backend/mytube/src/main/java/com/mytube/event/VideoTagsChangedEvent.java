@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Изменился набор тегов видео
+public record VideoTagsChangedEvent(UUID videoId) {
+}
@@ -0,0 +1,7 @@
+package com.mytube.event;
+
+import java.util.UUID;
+
+// Публичное готовое видео скрыто: сменилась видимость или статус
+public record VideoUnpublishedEvent(UUID videoId, UUID channelId) {
+}
@@ -0,0 +1,8 @@
+package com.mytube.event;
+
+import java.util.Map;
+import java.util.UUID;
+
+// Пакет просмотров записан в videos.view_count: видео -> новое значение счетчика и прирост за пакет
+public record ViewCountsFlushedEvent(Map<UUID, Long> viewCounts, Map<UUID, Long> viewDeltas) {
+}
@@ -0,0 +1,15 @@
+package com.mytube.exception;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+
+    // Через сколько миллисекунд появится следующий токен
+    private final long retryAfterMillis;
+
+    public RateLimitExceededException(long retryAfterMillis) {
+        super("Rate limit exceeded");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
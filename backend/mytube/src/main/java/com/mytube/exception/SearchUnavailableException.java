@@ -0,0 +1,15 @@
+package com.mytube.exception;
+
+import lombok.Getter;
+
+@Getter
+public class SearchUnavailableException extends RuntimeException {
+
+    // HTTP-статус ответа Elasticsearch или 503, если ответа нет
+    private final int status;
+
+    public SearchUnavailableException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
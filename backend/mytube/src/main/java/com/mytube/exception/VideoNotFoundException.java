@@ -0,0 +1,11 @@
+package com.mytube.exception;
+
+import java.util.UUID;
+
+// Видео нет или оно недоступно зрителю; наружу оба случая выглядят одинаково - 404
+public class VideoNotFoundException extends RuntimeException {
+
+    public VideoNotFoundException(UUID videoId) {
+        super("Video not found: " + videoId);
+    }
+}
@@ -1,9 +1,16 @@
 package com.mytube.repository;
 
 import com.mytube.entity.CommentReaction;
+import com.mytube.repository.projection.CommentReactionChange;
+import com.mytube.repository.projection.ReactionState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +20,76 @@ public interface CommentReactionRepository extends JpaRepository<CommentReaction
     Optional<CommentReaction> findByUserIdAndCommentId(UUID userId, UUID commentId);
 
     boolean existsByUserIdAndCommentId(UUID userId, UUID commentId);
-}
\ No newline at end of file
+
+    @Query("SELECT r.comment.id AS targetId, r.isLike AS isLike FROM CommentReaction r WHERE r.user.id = :userId AND r.comment.id IN :commentIds")
+    List<ReactionState> findReactionStates(@Param("userId") UUID userId, @Param("commentIds") Collection<UUID> commentIds);
+
+    // Та же схема, что и VideoReactionRepository.applyReaction, но для комментариев; видимость - по их видео
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT c.id
+                FROM comments c
+                         JOIN videos v ON v.id = c.video_id
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE c.id = :commentId
+                  AND ((v.status = 'READY' AND v.visibility <> 'PRIVATE') OR ch.user_id = :userId)
+            ), upsert AS (
+                INSERT INTO comment_reactions (user_id, comment_id, is_like)
+                SELECT :userId, t.id, :isLike
+                FROM target t
+                ON CONFLICT (user_id, comment_id) DO UPDATE
+                    SET is_like = EXCLUDED.is_like, created_at = CURRENT_TIMESTAMP
+                    WHERE comment_reactions.is_like <> EXCLUDED.is_like
+                RETURNING CASE WHEN xmax = 0 THEN 0 WHEN is_like THEN -1 ELSE 1 END AS previous
+            ), counters AS (
+                UPDATE comments c
+                SET like_count    = c.like_count + CASE WHEN :isLike THEN 1 WHEN u.previous = 1 THEN -1 ELSE 0 END,
+                    dislike_count = c.dislike_count + CASE WHEN NOT :isLike THEN 1 WHEN u.previous = -1 THEN -1 ELSE 0 END
+                FROM upsert u
+                WHERE c.id = :commentId
+                RETURNING c.like_count, c.dislike_count
+            )
+            SELECT COALESCE((SELECT previous FROM upsert), CASE WHEN :isLike THEN 1 ELSE -1 END) AS "previous",
+                   COALESCE((SELECT like_count FROM counters), c.like_count)                     AS "likeCount",
+                   COALESCE((SELECT dislike_count FROM counters), c.dislike_count)               AS "dislikeCount",
+                   c.video_id AS "videoId", c.parent_comment_id AS "parentId",
+                   c.is_pinned AS "isPinned", c.created_at AS "createdAt"
+            FROM comments c
+                     JOIN target t ON t.id = c.id
+            """, nativeQuery = true)
+    CommentReactionChange applyReaction(@Param("userId") UUID userId,
+                                 @Param("commentId") UUID commentId,
+                                 @Param("isLike") boolean isLike);
+
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT c.id
+                FROM comments c
+                         JOIN videos v ON v.id = c.video_id
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE c.id = :commentId
+                  AND ((v.status = 'READY' AND v.visibility <> 'PRIVATE') OR ch.user_id = :userId)
+            ), removed AS (
+                DELETE FROM comment_reactions
+                WHERE user_id = :userId AND comment_id IN (SELECT id FROM target)
+                RETURNING CASE WHEN is_like THEN 1 ELSE -1 END AS previous
+            ), counters AS (
+                UPDATE comments c
+                SET like_count    = c.like_count - CASE WHEN r.previous = 1 THEN 1 ELSE 0 END,
+                    dislike_count = c.dislike_count - CASE WHEN r.previous = -1 THEN 1 ELSE 0 END
+                FROM removed r
+                WHERE c.id = :commentId
+                RETURNING c.like_count, c.dislike_count
+            )
+            SELECT COALESCE((SELECT previous FROM removed), 0)                  AS "previous",
+                   COALESCE((SELECT like_count FROM counters), c.like_count)       AS "likeCount",
+                   COALESCE((SELECT dislike_count FROM counters), c.dislike_count) AS "dislikeCount",
+                   c.video_id AS "videoId", c.parent_comment_id AS "parentId",
+                   c.is_pinned AS "isPinned", c.created_at AS "createdAt"
+            FROM comments c
+                     JOIN target t ON t.id = c.id
+            """, nativeQuery = true)
+    CommentReactionChange clearReaction(@Param("userId") UUID userId, @Param("commentId") UUID commentId);
+}
@@ -1,24 +1,186 @@
 package com.mytube.repository;
 
 import com.mytube.entity.Comment;
+import com.mytube.repository.projection.CommentStats;
+import com.mytube.repository.projection.CommentView;
+import com.mytube.repository.projection.DeletedSubtree;
+import com.mytube.repository.projection.ReplyCount;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, UUID> {
 
-    @Query("SELECT c FROM Comment c WHERE c.video.id = :videoId AND c.parentComment IS NULL ORDER BY c.createdAt DESC")
-    List<Comment> findRootCommentsByVideoIdOrderByCreatedAtDesc(@Param("videoId") UUID videoId);
+    String COMMENT_VIEW_COLUMNS = """
+            c.id AS "id", c.parent_comment_id AS "parentId", c.depth AS "depth", c.path AS "path",
+            c.content AS "content", c.like_count AS "likeCount", c.dislike_count AS "dislikeCount",
+            c.is_pinned AS "isPinned",
+            c.created_at AS "createdAt", u.id AS "authorId", u.username AS "authorUsername",
+            u.avatar_url AS "authorAvatarUrl"
+            """;
 
-    @Query("SELECT c FROM Comment c WHERE c.parentComment.id = :parentId ORDER BY c.createdAt ASC")
-    List<Comment> findRepliesByParentIdOrderByCreatedAtAsc(@Param("parentId") UUID parentId);
+    // Первая страница корневых комментариев, идет по частичному индексу idx_comments_video_root_created
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS + """
+            FROM comments c
+                     JOIN users u ON u.id = c.user_id
+            WHERE c.video_id = :videoId AND c.parent_comment_id IS NULL
+            ORDER BY c.created_at DESC, c.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CommentView> findRootCommentViews(@Param("videoId") UUID videoId, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS + """
+            FROM comments c
+                     JOIN users u ON u.id = c.user_id
+            WHERE c.video_id = :videoId AND c.parent_comment_id IS NULL
+              AND (c.created_at, c.id) < (:createdAt, :id)
+            ORDER BY c.created_at DESC, c.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CommentView> findRootCommentViewsBefore(@Param("videoId") UUID videoId,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") UUID id,
+                                                 @Param("limit") int limit);
+
+    // Порядок "топ": закрепленный, лайки, свежесть. Идет по индексу idx_comments_video_root_top
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS + """
+            FROM comments c
+                     JOIN users u ON u.id = c.user_id
+            WHERE c.video_id = :videoId AND c.parent_comment_id IS NULL
+            ORDER BY c.is_pinned DESC, c.like_count DESC, c.created_at DESC, c.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CommentView> findTopRootCommentViews(@Param("videoId") UUID videoId, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS + """
+            FROM comments c
+                     JOIN users u ON u.id = c.user_id
+            WHERE c.video_id = :videoId AND c.parent_comment_id IS NULL
+              AND (c.is_pinned, c.like_count, c.created_at, c.id) < (:pinned, :likeCount, :createdAt, :id)
+            ORDER BY c.is_pinned DESC, c.like_count DESC, c.created_at DESC, c.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CommentView> findTopRootCommentViewsAfter(@Param("videoId") UUID videoId,
+                                                   @Param("pinned") boolean pinned,
+                                                   @Param("likeCount") long likeCount,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") UUID id,
+                                                   @Param("limit") int limit);
+
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS + """
+            FROM comments c
+                     JOIN users u ON u.id = c.user_id
+            WHERE c.id IN (:ids)
+            """, nativeQuery = true)
+    List<CommentView> findCommentViewsByIds(@Param("ids") Collection<UUID> ids);
+
+    // Закрепляет комментарий и снимает прежнее закрепление одним запросом. Менять может только владелец канала,
+    // для чужого или несуществующего комментария вернется пустой список
+    @Transactional
+    @Query(value = """
+            UPDATE comments c
+            SET is_pinned  = (c.id = :commentId AND :pinned),
+                updated_at = CURRENT_TIMESTAMP
+            FROM comments target
+                     JOIN videos v ON v.id = target.video_id
+                     JOIN channels ch ON ch.id = v.channel_id
+            WHERE target.id = :commentId AND target.parent_comment_id IS NULL AND ch.user_id = :userId
+              AND c.video_id = target.video_id AND c.parent_comment_id IS NULL
+              AND (c.id = :commentId OR c.is_pinned)
+            RETURNING c.id AS "id", c.video_id AS "videoId", c.parent_comment_id AS "parentId",
+                      c.is_pinned AS "isPinned", c.like_count AS "likeCount", c.dislike_count AS "dislikeCount",
+                      c.created_at AS "createdAt"
+            """, nativeQuery = true)
+    List<CommentStats> updatePinned(@Param("userId") UUID userId,
+                                    @Param("commentId") UUID commentId,
+                                    @Param("pinned") boolean pinned);
+
+    /**
+     * Вставка комментария с заранее сгенерированным id: путь и корень ветки считаются в том же запросе
+     * от родителя. Пустой результат - видео нет или оно не видно автору (скрытое или неготовое видео
+     * комментирует только владелец), комментарии выключены или родитель из другого видео.
+     */
+    @Transactional
+    @Query(value = """
+            WITH c AS (
+                INSERT INTO comments (id, video_id, user_id, parent_comment_id, root_id, path, depth, content)
+                SELECT CAST(:id AS uuid), v.id, :userId, p.id,
+                       COALESCE(p.root_id, CAST(:id AS uuid)),
+                       COALESCE(p.path, '')
+                           || lpad(to_hex(CAST(extract(EPOCH FROM now()) * 1000 AS bigint)), 11, '0')
+                           || replace(CAST(:id AS text), '-', '') || '/',
+                       COALESCE(p.depth + 1, 0),
+                       :content
+                FROM videos v
+                         JOIN channels ch ON ch.id = v.channel_id
+                         LEFT JOIN comments p ON p.id = CAST(:parentId AS uuid) AND p.video_id = v.id
+                WHERE v.id = :videoId AND v.comments_enabled
+                  AND ((v.status = 'READY' AND v.visibility <> 'PRIVATE') OR ch.user_id = :userId)
+                  AND (CAST(:parentId AS uuid) IS NULL OR p.id IS NOT NULL)
+                RETURNING *
+            )
+            SELECT
+            """ + COMMENT_VIEW_COLUMNS + """
+            FROM c
+                     JOIN users u ON u.id = c.user_id
+            """, nativeQuery = true)
+    CommentView insertComment(@Param("id") UUID id,
+                              @Param("videoId") UUID videoId,
+                              @Param("userId") UUID userId,
+                              @Param("parentId") UUID parentId,
+                              @Param("content") String content);
+
+    /**
+     * Кусок ветки в порядке обхода в глубину: потомки комментария лежат в диапазоне путей
+     * (after, upper) одного root_id, поэтому это один range scan по idx_comments_thread_path.
+     */
+    @Query(value = "SELECT " + COMMENT_VIEW_COLUMNS + """
+            FROM comments c
+                     JOIN users u ON u.id = c.user_id
+            WHERE c.root_id = :rootId AND c.path > :after AND c.path < :upper AND c.depth <= :maxDepth
+            ORDER BY c.path
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CommentView> findSubtreeSlice(@Param("rootId") UUID rootId,
+                                       @Param("after") String after,
+                                       @Param("upper") String upper,
+                                       @Param("maxDepth") int maxDepth,
+                                       @Param("limit") int limit);
+
+    // Удаляет комментарий со всей веткой одним запросом. Удалить может автор или владелец канала,
+    // comment_count видео корректирует вызывающий через CounterBuffer
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT c.id, c.video_id, c.parent_comment_id, c.root_id, c.path
+                FROM comments c
+                         JOIN videos v ON v.id = c.video_id
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE c.id = :commentId AND (c.user_id = :userId OR ch.user_id = :userId)
+            ), removed AS (
+                DELETE FROM comments c
+                USING target t
+                WHERE c.root_id = t.root_id AND c.path >= t.path AND c.path < t.path || '~'
+                RETURNING c.id
+            )
+            SELECT t.video_id AS "videoId", t.parent_comment_id AS "parentId",
+                   (SELECT count(*) FROM removed) AS "removed"
+            FROM target t
+            """, nativeQuery = true)
+    DeletedSubtree deleteSubtree(@Param("userId") UUID userId, @Param("commentId") UUID commentId);
+
+    @Query("SELECT c.parentComment.id AS parentId, COUNT(c) AS replyCount FROM Comment c WHERE c.parentComment.id IN :parentIds GROUP BY c.parentComment.id")
+    List<ReplyCount> countRepliesByParentIds(@Param("parentIds") Collection<UUID> parentIds);
 
     long countByVideoId(UUID videoId);
 
     long countByParentCommentId(UUID parentCommentId);
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.mytube.repository;
+
+import com.mytube.entity.DailyVideoStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface DailyVideoStatsRepository extends JpaRepository<DailyVideoStats, Long> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO daily_video_stats (video_id, date, view_count, unique_viewers, average_watch_time)
+            SELECT vv.video_id,
+                   CAST(vv.viewed_at AS DATE),
+                   COUNT(*),
+                   COUNT(DISTINCT vv.session_id),
+                   COALESCE(AVG(vv.watch_time_seconds), 0)
+            FROM video_views vv
+            WHERE vv.viewed_at >= :from AND vv.viewed_at < :to
+            GROUP BY vv.video_id, CAST(vv.viewed_at AS DATE)
+            ON CONFLICT (video_id, date) DO UPDATE
+                SET view_count         = EXCLUDED.view_count,
+                    unique_viewers     = EXCLUDED.unique_viewers,
+                    average_watch_time = EXCLUDED.average_watch_time
+            """, nativeQuery = true)
+    int upsertFromVideoViews(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Среднее взвешиваем по числу просмотров за день, чтобы не сканировать video_views
+    @Query("SELECT SUM(s.averageWatchTime * s.viewCount) / SUM(s.viewCount) FROM DailyVideoStats s WHERE s.video.id = :videoId")
+    Double getAverageWatchTimeByVideoId(@Param("videoId") UUID videoId);
+}
@@ -0,0 +1,19 @@
+package com.mytube.repository;
+
+import com.mytube.entity.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    // id монотонный, поэтому он сам служит keyset-курсором; идет по idx_notifications_user_id
+    @Query("SELECT n FROM Notification n WHERE n.userId = :userId AND n.id < :beforeId ORDER BY n.id DESC")
+    List<Notification> findPageBefore(@Param("userId") UUID userId, @Param("beforeId") long beforeId, Pageable pageable);
+}
@@ -1,12 +1,15 @@
 package com.mytube.repository;
 
 import com.mytube.entity.Playlist;
+import com.mytube.repository.projection.PlaylistAccess;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -16,4 +19,50 @@ public interface PlaylistRepository extends JpaRepository<Playlist, UUID> {
     List<Playlist> findByChannelIdOrderByCreatedAtDesc(@Param("channelId") UUID channelId);
 
     long countByChannelId(UUID channelId);
+
+    @Query(value = """
+            SELECT p.user_id AS "ownerId", CAST(p.visibility AS text) AS "visibility"
+            FROM playlists p
+            WHERE p.id = :playlistId
+            """, nativeQuery = true)
+    Optional<PlaylistAccess> findAccess(@Param("playlistId") UUID playlistId);
+
+    // Блокировка строки плейлиста сериализует изменения его состава: позиции считаются без гонок
+    @Query(value = """
+            SELECT p.id
+            FROM playlists p
+            WHERE p.id = :playlistId AND p.user_id = :userId
+            FOR UPDATE
+            """, nativeQuery = true)
+    Optional<UUID> lockOwned(@Param("playlistId") UUID playlistId, @Param("userId") UUID userId);
+
+    @Query(value = "SELECT p.id FROM playlists p WHERE p.id = :playlistId FOR UPDATE", nativeQuery = true)
+    Optional<UUID> lock(@Param("playlistId") UUID playlistId);
+
+    /**
+     * Системный плейлист пользователя; создается при первом обращении. Обычно находится первым
+     * подзапросом без записи. Если два первых обращения гонятся, INSERT проигравшего упирается в
+     * уникальный индекс: DO UPDATE дожидается коммита победителя и возвращает id его строки (DO NOTHING
+     * не вернул бы ничего, а снимок оператора ее еще не видит).
+     */
+    @Transactional
+    @Query(value = """
+            WITH existing AS (
+                SELECT p.id FROM playlists p WHERE p.user_id = :userId AND p.system_type = :systemType
+            ), created AS (
+                INSERT INTO playlists (user_id, system_type, title, visibility)
+                SELECT :userId, :systemType, :title, CAST('PRIVATE' AS video_visibility)
+                WHERE NOT EXISTS (SELECT 1 FROM existing)
+                ON CONFLICT (user_id, system_type) WHERE system_type IS NOT NULL
+                    DO UPDATE SET system_type = EXCLUDED.system_type
+                RETURNING id
+            )
+            SELECT id FROM existing
+            UNION ALL
+            SELECT id FROM created
+            LIMIT 1
+            """, nativeQuery = true)
+    UUID findOrCreateSystemPlaylist(@Param("userId") UUID userId,
+                                    @Param("systemType") String systemType,
+                                    @Param("title") String title);
 }
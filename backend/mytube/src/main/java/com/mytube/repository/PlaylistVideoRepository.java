@@ -0,0 +1,94 @@
+package com.mytube.repository;
+
+import com.mytube.entity.PlaylistVideo;
+import com.mytube.repository.projection.PlaylistItemView;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PlaylistVideoRepository extends JpaRepository<PlaylistVideo, Long> {
+
+    String PLAYLIST_ITEMS_FROM = """
+            FROM playlist_videos pv
+                     JOIN videos v ON v.id = pv.video_id
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            """;
+
+    // Первая страница плейлиста по idx_playlist_videos_position; приватные и неготовые видео не показываются
+    @Query(value = "SELECT " + VideoRepository.VIDEO_CARD_COLUMNS + ", pv.id AS \"itemId\", pv.position AS \"position\" "
+            + PLAYLIST_ITEMS_FROM + """
+            WHERE pv.playlist_id = :playlistId AND v.status = 'READY' AND v.visibility <> 'PRIVATE'
+            ORDER BY pv.position, pv.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<PlaylistItemView> findItems(@Param("playlistId") UUID playlistId, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + VideoRepository.VIDEO_CARD_COLUMNS + ", pv.id AS \"itemId\", pv.position AS \"position\" "
+            + PLAYLIST_ITEMS_FROM + """
+            WHERE pv.playlist_id = :playlistId AND (pv.position, pv.id) > (:position, :itemId)
+              AND v.status = 'READY' AND v.visibility <> 'PRIVATE'
+            ORDER BY pv.position, pv.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<PlaylistItemView> findItemsAfter(@Param("playlistId") UUID playlistId,
+                                          @Param("position") long position,
+                                          @Param("itemId") long itemId,
+                                          @Param("limit") int limit);
+
+    @Query(value = "SELECT pv.position FROM playlist_videos pv WHERE pv.playlist_id = :playlistId AND pv.video_id = :videoId",
+            nativeQuery = true)
+    Optional<Long> findPosition(@Param("playlistId") UUID playlistId, @Param("videoId") UUID videoId);
+
+    // Соседи и края берутся по индексу одной строкой, без чтения плейлиста целиком
+    @Query(value = "SELECT min(pv.position) FROM playlist_videos pv WHERE pv.playlist_id = :playlistId AND pv.position > :position",
+            nativeQuery = true)
+    Long findNextPosition(@Param("playlistId") UUID playlistId, @Param("position") long position);
+
+    @Query(value = "SELECT max(pv.position) FROM playlist_videos pv WHERE pv.playlist_id = :playlistId AND pv.position < :position",
+            nativeQuery = true)
+    Long findPreviousPosition(@Param("playlistId") UUID playlistId, @Param("position") long position);
+
+    @Query(value = "SELECT max(pv.position) FROM playlist_videos pv WHERE pv.playlist_id = :playlistId",
+            nativeQuery = true)
+    Long findLastPosition(@Param("playlistId") UUID playlistId);
+
+    // Добавлять можно только готовые не приватные видео; повторное добавление - no-op
+    @Modifying
+    @Query(value = """
+            INSERT INTO playlist_videos (playlist_id, video_id, position)
+            SELECT :playlistId, v.id, :position
+            FROM videos v
+            WHERE v.id = :videoId AND v.status = 'READY' AND v.visibility <> 'PRIVATE'
+            ON CONFLICT (playlist_id, video_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertItem(@Param("playlistId") UUID playlistId, @Param("videoId") UUID videoId, @Param("position") long position);
+
+    @Modifying
+    @Query(value = "UPDATE playlist_videos SET position = :position WHERE playlist_id = :playlistId AND video_id = :videoId",
+            nativeQuery = true)
+    int updatePosition(@Param("playlistId") UUID playlistId, @Param("videoId") UUID videoId, @Param("position") long position);
+
+    @Modifying
+    @Query(value = "DELETE FROM playlist_videos WHERE playlist_id = :playlistId AND video_id = :videoId", nativeQuery = true)
+    int deleteItem(@Param("playlistId") UUID playlistId, @Param("videoId") UUID videoId);
+
+    // Переразметка позиций с равным шагом с сохранением порядка; строки, уже стоящие на месте, не трогаются
+    @Modifying
+    @Query(value = """
+            UPDATE playlist_videos pv
+            SET position = r.rn * :step
+            FROM (SELECT id, row_number() OVER (ORDER BY position, id) AS rn
+                  FROM playlist_videos
+                  WHERE playlist_id = :playlistId) r
+            WHERE pv.id = r.id AND pv.position <> r.rn * :step
+            """, nativeQuery = true)
+    int compact(@Param("playlistId") UUID playlistId, @Param("step") long step);
+}
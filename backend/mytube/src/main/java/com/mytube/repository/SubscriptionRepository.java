@@ -1,9 +1,15 @@
 package com.mytube.repository;
 
 import com.mytube.entity.Subscription;
+import com.mytube.repository.projection.TimelineEntry;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,4 +23,70 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Long
     long countByChannelId(UUID channelId);
 
     long countBySubscriberId(UUID subscriberId);
+
+    // 1 - подписка создана, 0 - уже была, канала нет или это свой канал
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO subscriptions (subscriber_id, channel_id)
+            SELECT :subscriberId, ch.id
+            FROM channels ch
+            WHERE ch.id = :channelId AND ch.user_id <> :subscriberId
+            ON CONFLICT (subscriber_id, channel_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("subscriberId") UUID subscriberId, @Param("channelId") UUID channelId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM subscriptions WHERE subscriber_id = :subscriberId AND channel_id = :channelId",
+            nativeQuery = true)
+    int deleteIfPresent(@Param("subscriberId") UUID subscriberId, @Param("channelId") UUID channelId);
+
+    @Query(value = "SELECT s.channel_id FROM subscriptions s WHERE s.subscriber_id = :subscriberId", nativeQuery = true)
+    List<UUID> findChannelIdsBySubscriberId(@Param("subscriberId") UUID subscriberId);
+
+    // Keyset-батч подписчиков канала по индексу idx_subscriptions_channel_subscriber
+    @Query(value = """
+            SELECT s.subscriber_id
+            FROM subscriptions s
+            WHERE s.channel_id = :channelId AND s.subscriber_id > :after
+            ORDER BY s.subscriber_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<UUID> findSubscriberIdsAfter(@Param("channelId") UUID channelId,
+                                      @Param("after") UUID after,
+                                      @Param("limit") int limit);
+
+    // Подписки пользователя на крупные каналы - их ленты домешиваются при чтении
+    @Query(value = """
+            SELECT s.channel_id
+            FROM subscriptions s
+                     JOIN channels ch ON ch.id = s.channel_id
+            WHERE s.subscriber_id = :subscriberId AND ch.subscriber_count >= :threshold
+            """, nativeQuery = true)
+    List<UUID> findLargeChannelIds(@Param("subscriberId") UUID subscriberId, @Param("threshold") long threshold);
+
+    /**
+     * Начальное наполнение inbox'а: последние публикации каждого небольшого канала из подписок.
+     * LATERAL берет не больше perChannel строк на канал по индексу, а не весь каталог подписок.
+     */
+    @Query(value = """
+            SELECT t.id AS "id", t.published_at AS "publishedAt"
+            FROM subscriptions s
+                     JOIN channels ch ON ch.id = s.channel_id AND ch.subscriber_count < :threshold
+                     CROSS JOIN LATERAL (
+                SELECT v.id, v.published_at
+                FROM videos v
+                WHERE v.channel_id = s.channel_id AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+                ORDER BY v.published_at DESC, v.id DESC
+                LIMIT :perChannel
+                ) t
+            WHERE s.subscriber_id = :subscriberId
+            ORDER BY t.published_at DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<TimelineEntry> findInboxSeed(@Param("subscriberId") UUID subscriberId,
+                                      @Param("threshold") long threshold,
+                                      @Param("perChannel") int perChannel,
+                                      @Param("limit") int limit);
 }
\ No newline at end of file
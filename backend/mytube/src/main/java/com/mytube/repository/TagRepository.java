@@ -0,0 +1,26 @@
+package com.mytube.repository;
+
+import com.mytube.entity.Tag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface TagRepository extends JpaRepository<Tag, Long> {
+
+    Optional<Tag> findByName(String name);
+
+    @Query(value = """
+            SELECT t.*
+            FROM tags t
+                     JOIN video_tags vt ON vt.tag_id = t.id
+            WHERE vt.video_id = :videoId
+            ORDER BY t.name
+            """, nativeQuery = true)
+    List<Tag> findByVideoId(@Param("videoId") UUID videoId);
+}
@@ -1,9 +1,16 @@
 package com.mytube.repository;
 
 import com.mytube.entity.VideoReaction;
+import com.mytube.repository.projection.ReactionChange;
+import com.mytube.repository.projection.ReactionState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +20,77 @@ public interface VideoReactionRepository extends JpaRepository<VideoReaction, Lo
     Optional<VideoReaction> findByUserIdAndVideoId(UUID userId, UUID videoId);
 
     boolean existsByUserIdAndVideoId(UUID userId, UUID videoId);
-}
\ No newline at end of file
+
+    @Query("SELECT r.video.id AS targetId, r.isLike AS isLike FROM VideoReaction r WHERE r.user.id = :userId AND r.video.id IN :videoIds")
+    List<ReactionState> findReactionStates(@Param("userId") UUID userId, @Param("videoIds") Collection<UUID> videoIds);
+
+    /*
+     * Ставит лайк/дизлайк одним запросом. Повторная установка той же реакции ничего не меняет
+     * (DO UPDATE ... WHERE не срабатывает), поэтому двойной клик безопасен. Предыдущее состояние
+     * однозначно выводится из результата: вставка - реакции не было, обновление - была противоположная,
+     * пустой RETURNING - была такая же. Счетчики видео правятся дельтой в том же запросе.
+     * Реагировать можно только на видимое видео (готовое и не приватное или свое): иначе target пуст
+     * и запрос возвращает null, как для несуществующего видео.
+     */
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT v.id
+                FROM videos v
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE v.id = :videoId
+                  AND ((v.status = 'READY' AND v.visibility <> 'PRIVATE') OR ch.user_id = :userId)
+            ), upsert AS (
+                INSERT INTO video_reactions (user_id, video_id, is_like)
+                SELECT :userId, t.id, :isLike
+                FROM target t
+                ON CONFLICT (user_id, video_id) DO UPDATE
+                    SET is_like = EXCLUDED.is_like, created_at = CURRENT_TIMESTAMP
+                    WHERE video_reactions.is_like <> EXCLUDED.is_like
+                RETURNING CASE WHEN xmax = 0 THEN 0 WHEN is_like THEN -1 ELSE 1 END AS previous
+            ), counters AS (
+                UPDATE videos v
+                SET like_count    = v.like_count + CASE WHEN :isLike THEN 1 WHEN u.previous = 1 THEN -1 ELSE 0 END,
+                    dislike_count = v.dislike_count + CASE WHEN NOT :isLike THEN 1 WHEN u.previous = -1 THEN -1 ELSE 0 END
+                FROM upsert u
+                WHERE v.id = :videoId
+                RETURNING v.like_count, v.dislike_count
+            )
+            SELECT COALESCE((SELECT previous FROM upsert), CASE WHEN :isLike THEN 1 ELSE -1 END) AS "previous",
+                   COALESCE((SELECT like_count FROM counters), v.like_count)                     AS "likeCount",
+                   COALESCE((SELECT dislike_count FROM counters), v.dislike_count)               AS "dislikeCount"
+            FROM videos v
+                     JOIN target t ON t.id = v.id
+            """, nativeQuery = true)
+    ReactionChange applyReaction(@Param("userId") UUID userId,
+                                 @Param("videoId") UUID videoId,
+                                 @Param("isLike") boolean isLike);
+
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT v.id
+                FROM videos v
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE v.id = :videoId
+                  AND ((v.status = 'READY' AND v.visibility <> 'PRIVATE') OR ch.user_id = :userId)
+            ), removed AS (
+                DELETE FROM video_reactions
+                WHERE user_id = :userId AND video_id IN (SELECT id FROM target)
+                RETURNING CASE WHEN is_like THEN 1 ELSE -1 END AS previous
+            ), counters AS (
+                UPDATE videos v
+                SET like_count    = v.like_count - CASE WHEN r.previous = 1 THEN 1 ELSE 0 END,
+                    dislike_count = v.dislike_count - CASE WHEN r.previous = -1 THEN 1 ELSE 0 END
+                FROM removed r
+                WHERE v.id = :videoId
+                RETURNING v.like_count, v.dislike_count
+            )
+            SELECT COALESCE((SELECT previous FROM removed), 0)                  AS "previous",
+                   COALESCE((SELECT like_count FROM counters), v.like_count)       AS "likeCount",
+                   COALESCE((SELECT dislike_count FROM counters), v.dislike_count) AS "dislikeCount"
+            FROM videos v
+                     JOIN target t ON t.id = v.id
+            """, nativeQuery = true)
+    ReactionChange clearReaction(@Param("userId") UUID userId, @Param("videoId") UUID videoId);
+}
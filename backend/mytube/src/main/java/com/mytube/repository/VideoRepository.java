@@ -3,11 +3,17 @@ package com.mytube.repository;
 import com.mytube.entity.Video;
 import com.mytube.entity.enums.VideoStatus;
 import com.mytube.entity.enums.VideoVisibility;
+import com.mytube.repository.projection.TimelineEntry;
+import com.mytube.repository.projection.VideoCardView;
+import com.mytube.repository.projection.VideoStateChange;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,11 +21,171 @@ import java.util.UUID;
 @Repository
 public interface VideoRepository extends JpaRepository<Video, UUID> {
 
-    @Query("SELECT v FROM Video v WHERE v.channel.id = :channelId ORDER BY v.publishedAt DESC")
-    List<Video> findByChannelIdOrderByPublishedAtDesc(@Param("channelId") UUID channelId);
+    String VIDEO_CARD_COLUMNS = """
+            v.id AS "id", v.title AS "title", v.thumbnail_url AS "thumbnailUrl",
+            v.duration_seconds AS "durationSeconds", v.view_count AS "viewCount", v.published_at AS "publishedAt",
+            ch.id AS "channelId", ch.channel_name AS "channelName", u.avatar_url AS "channelAvatarUrl"
+            """;
 
-    @Query("SELECT v FROM Video v WHERE v.visibility = 'PUBLIC' AND v.status = 'READY' ORDER BY v.publishedAt DESC")
-    List<Video> findPublicVideosOrderByPublishedAtDesc();
+    // Карточки по списку id; непубличные и неготовые видео отфильтровываются
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM videos v
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE v.id IN (:ids) AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+            """, nativeQuery = true)
+    List<VideoCardView> findVideoCardsByIds(@Param("ids") Collection<UUID> ids);
+
+    // Последние публикации канала, идет по idx_videos_channel_published
+    @Query(value = """
+            SELECT v.id AS "id", v.published_at AS "publishedAt"
+            FROM videos v
+            WHERE v.channel_id = :channelId AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<TimelineEntry> findChannelTimeline(@Param("channelId") UUID channelId, @Param("limit") int limit);
+
+    // Лента подписок прямо из БД - запасной путь, когда inbox'ы в Redis недоступны
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM subscriptions s
+                     JOIN videos v ON v.channel_id = s.channel_id
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE s.subscriber_id = :userId AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<VideoCardView> findSubscriptionVideoCards(@Param("userId") UUID userId, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM subscriptions s
+                     JOIN videos v ON v.channel_id = s.channel_id
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE s.subscriber_id = :userId AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+              AND (v.published_at, v.id) < (:publishedAt, :id)
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<VideoCardView> findSubscriptionVideoCardsBefore(@Param("userId") UUID userId,
+                                                         @Param("publishedAt") LocalDateTime publishedAt,
+                                                         @Param("id") UUID id,
+                                                         @Param("limit") int limit);
+
+    /**
+     * Переводит видео в READY после обработки. published_at проставляется при первом переходе
+     * и дальше не меняется; прежние статус и видимость возвращаются, чтобы понять, стало ли видео публичным.
+     */
+    @Transactional
+    @Query(value = """
+            WITH before AS (
+                SELECT id, status, visibility FROM videos WHERE id = :videoId FOR UPDATE
+            )
+            UPDATE videos v
+            SET status       = 'READY',
+                published_at = COALESCE(v.published_at, CURRENT_TIMESTAMP),
+                updated_at   = CURRENT_TIMESTAMP
+            FROM before b
+            WHERE v.id = b.id
+            RETURNING v.id AS "videoId", v.channel_id AS "channelId",
+                      CAST(b.status AS text) AS "previousStatus", CAST(b.visibility AS text) AS "previousVisibility",
+                      CAST(v.status AS text) AS "status", CAST(v.visibility AS text) AS "visibility",
+                      v.published_at AS "publishedAt"
+            """, nativeQuery = true)
+    VideoStateChange markReady(@Param("videoId") UUID videoId);
+
+    // Главная: публичные видео, новые сверху; идет по idx_videos_public_published
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM videos v
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE v.visibility = 'PUBLIC' AND v.status = 'READY'
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<VideoCardView> findPublicVideoCards(@Param("limit") int limit);
+
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM videos v
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE v.visibility = 'PUBLIC' AND v.status = 'READY'
+              AND (v.published_at, v.id) < (:publishedAt, :id)
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<VideoCardView> findPublicVideoCardsBefore(@Param("publishedAt") LocalDateTime publishedAt,
+                                                   @Param("id") UUID id,
+                                                   @Param("limit") int limit);
+
+    // Видео канала, идет по idx_videos_channel_published
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM videos v
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE v.channel_id = :channelId AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<VideoCardView> findChannelVideoCards(@Param("channelId") UUID channelId, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + VIDEO_CARD_COLUMNS + """
+            FROM videos v
+                     JOIN channels ch ON ch.id = v.channel_id
+                     JOIN users u ON u.id = ch.user_id
+            WHERE v.channel_id = :channelId AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+              AND (v.published_at, v.id) < (:publishedAt, :id)
+            ORDER BY v.published_at DESC, v.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<VideoCardView> findChannelVideoCardsBefore(@Param("channelId") UUID channelId,
+                                                    @Param("publishedAt") LocalDateTime publishedAt,
+                                                    @Param("id") UUID id,
+                                                    @Param("limit") int limit);
+
+    /**
+     * Меняет видимость видео. Менять может только владелец канала, для чужого или несуществующего
+     * видео вернется null. published_at проставляется, если готовое видео впервые стало публичным.
+     */
+    @Transactional
+    @Query(value = """
+            WITH before AS (
+                SELECT v.id, v.status, v.visibility
+                FROM videos v
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE v.id = :videoId AND ch.user_id = :userId
+                FOR UPDATE OF v
+            )
+            UPDATE videos v
+            SET visibility   = CAST(:visibility AS video_visibility),
+                published_at = CASE
+                                   WHEN v.status = 'READY' AND :visibility = 'PUBLIC'
+                                       THEN COALESCE(v.published_at, CURRENT_TIMESTAMP)
+                                   ELSE v.published_at END,
+                updated_at   = CURRENT_TIMESTAMP
+            FROM before b
+            WHERE v.id = b.id
+            RETURNING v.id AS "videoId", v.channel_id AS "channelId",
+                      CAST(b.status AS text) AS "previousStatus", CAST(b.visibility AS text) AS "previousVisibility",
+                      CAST(v.status AS text) AS "status", CAST(v.visibility AS text) AS "visibility",
+                      v.published_at AS "publishedAt"
+            """, nativeQuery = true)
+    VideoStateChange updateVisibility(@Param("userId") UUID userId,
+                                      @Param("videoId") UUID videoId,
+                                      @Param("visibility") String visibility);
+
+    // Видео доступно зрителю: готовое и не приватное, либо зритель - владелец канала
+    @Query(value = """
+            SELECT EXISTS (
+                SELECT 1
+                FROM videos v
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE v.id = :videoId
+                  AND ((v.status = 'READY' AND v.visibility <> 'PRIVATE') OR ch.user_id = CAST(:viewerId AS uuid))
+            )
+            """, nativeQuery = true)
+    boolean isViewable(@Param("videoId") UUID videoId, @Param("viewerId") UUID viewerId);
 
     long countByChannelId(UUID channelId);
 
@@ -13,7 +13,4 @@ public interface VideoViewRepository extends JpaRepository<VideoView, Long> {
 
     @Query("SELECT COUNT(DISTINCT vv.sessionId) FROM VideoView vv WHERE vv.video.id = :videoId")
     long countUniqueViewsByVideoId(@Param("videoId") UUID videoId);
-
-    @Query("SELECT AVG(vv.watchTimeSeconds) FROM VideoView vv WHERE vv.video.id = :videoId")
-    Double getAverageWatchTimeByVideoId(@Param("videoId") UUID videoId);
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.mytube.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Результат реакции на комментарий плюс поля, нужные для пересчета его рейтинга
+public interface CommentReactionChange extends ReactionChange {
+
+    UUID getVideoId();
+
+    UUID getParentId();
+
+    Boolean getIsPinned();
+
+    LocalDateTime getCreatedAt();
+}
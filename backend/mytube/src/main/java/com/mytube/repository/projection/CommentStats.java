@@ -0,0 +1,21 @@
+package com.mytube.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface CommentStats {
+
+    UUID getId();
+
+    UUID getVideoId();
+
+    UUID getParentId();
+
+    Boolean getIsPinned();
+
+    Long getLikeCount();
+
+    Long getDislikeCount();
+
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,32 @@
+package com.mytube.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Комментарий вместе с кратким профилем автора, читается одним нативным запросом
+public interface CommentView {
+
+    UUID getId();
+
+    UUID getParentId();
+
+    Integer getDepth();
+
+    String getPath();
+
+    String getContent();
+
+    Long getLikeCount();
+
+    Long getDislikeCount();
+
+    Boolean getIsPinned();
+
+    LocalDateTime getCreatedAt();
+
+    UUID getAuthorId();
+
+    String getAuthorUsername();
+
+    String getAuthorAvatarUrl();
+}
@@ -0,0 +1,12 @@
+package com.mytube.repository.projection;
+
+import java.util.UUID;
+
+public interface DeletedSubtree {
+
+    UUID getVideoId();
+
+    UUID getParentId();
+
+    Long getRemoved();
+}
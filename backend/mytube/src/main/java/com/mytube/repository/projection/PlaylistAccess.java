@@ -0,0 +1,11 @@
+package com.mytube.repository.projection;
+
+import java.util.UUID;
+
+// Кто владеет плейлистом и кому он виден
+public interface PlaylistAccess {
+
+    UUID getOwnerId();
+
+    String getVisibility();
+}
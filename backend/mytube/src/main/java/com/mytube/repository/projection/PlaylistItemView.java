@@ -0,0 +1,9 @@
+package com.mytube.repository.projection;
+
+// Элемент плейлиста: карточка видео плюс позиция и id строки для keyset-курсора
+public interface PlaylistItemView extends VideoCardView {
+
+    Long getItemId();
+
+    Long getPosition();
+}
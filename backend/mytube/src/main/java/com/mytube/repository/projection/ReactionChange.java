@@ -0,0 +1,11 @@
+package com.mytube.repository.projection;
+
+public interface ReactionChange {
+
+    // Код предыдущей реакции: 1 - лайк, -1 - дизлайк, 0 - не было
+    Integer getPrevious();
+
+    Long getLikeCount();
+
+    Long getDislikeCount();
+}
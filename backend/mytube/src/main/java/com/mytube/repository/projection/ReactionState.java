@@ -0,0 +1,11 @@
+package com.mytube.repository.projection;
+
+import java.util.UUID;
+
+public interface ReactionState {
+
+    // id видео или комментария, к которому относится реакция
+    UUID getTargetId();
+
+    Boolean getIsLike();
+}
@@ -0,0 +1,10 @@
+package com.mytube.repository.projection;
+
+import java.util.UUID;
+
+public interface ReplyCount {
+
+    UUID getParentId();
+
+    Long getReplyCount();
+}
@@ -0,0 +1,11 @@
+package com.mytube.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface TimelineEntry {
+
+    UUID getId();
+
+    LocalDateTime getPublishedAt();
+}
@@ -0,0 +1,26 @@
+package com.mytube.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Карточка видео для лент: только то, что рисуется в списке, плюс канал и аватар владельца
+public interface VideoCardView {
+
+    UUID getId();
+
+    String getTitle();
+
+    String getThumbnailUrl();
+
+    Integer getDurationSeconds();
+
+    Long getViewCount();
+
+    LocalDateTime getPublishedAt();
+
+    UUID getChannelId();
+
+    String getChannelName();
+
+    String getChannelAvatarUrl();
+}
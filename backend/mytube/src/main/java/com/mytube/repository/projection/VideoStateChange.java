@@ -0,0 +1,22 @@
+package com.mytube.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Состояние видео до и после изменения статуса или видимости
+public interface VideoStateChange {
+
+    UUID getVideoId();
+
+    UUID getChannelId();
+
+    String getPreviousStatus();
+
+    String getPreviousVisibility();
+
+    String getStatus();
+
+    String getVisibility();
+
+    LocalDateTime getPublishedAt();
+}
@@ -1,4 +1,60 @@
 package com.mytube.service;
 
+import com.mytube.entity.RollupWatermark;
+import com.mytube.repository.DailyVideoStatsRepository;
+import com.mytube.repository.RollupWatermarkRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
 public class AnalyticsService {
+
+    public static final String DAILY_VIDEO_STATS_ROLLUP = "daily_video_stats";
+
+    private final DailyVideoStatsRepository dailyVideoStatsRepository;
+    private final RollupWatermarkRepository rollupWatermarkRepository;
+
+    @Scheduled(cron = "${analytics.rollup-cron:0 0 1 * * *}")
+    @Transactional
+    public void rollupDailyVideoStats() {
+        LocalDateTime until = LocalDate.now().atStartOfDay();
+
+        RollupWatermark watermark = rollupWatermarkRepository.findById(DAILY_VIDEO_STATS_ROLLUP)
+                .orElseGet(() -> RollupWatermark.builder()
+                        .name(DAILY_VIDEO_STATS_ROLLUP)
+                        .processedUntil(LocalDate.EPOCH.atStartOfDay())
+                        .build());
+
+        LocalDateTime from = watermark.getProcessedUntil();
+        if (!from.isBefore(until)) {
+            return;
+        }
+
+        // Сворачиваем только закрытые дни, текущий день досчитается следующим запуском
+        int rows = dailyVideoStatsRepository.upsertFromVideoViews(from, until);
+
+        watermark.setProcessedUntil(until);
+        rollupWatermarkRepository.save(watermark);
+        log.info("Daily video stats rolled up for [{}, {}): {} rows", from, until, rows);
+    }
+
+    public double getAverageWatchTime(UUID videoId) {
+        Double average = dailyVideoStatsRepository.getAverageWatchTimeByVideoId(videoId);
+        return average != null ? average : 0.0;
+    }
+
+    public Optional<LocalDateTime> getRolledUpUntil(String rollupName) {
+        return rollupWatermarkRepository.findById(rollupName)
+                .map(RollupWatermark::getProcessedUntil);
+    }
 }
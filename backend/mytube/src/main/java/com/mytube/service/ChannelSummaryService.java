@@ -0,0 +1,207 @@
+package com.mytube.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytube.dto.ChannelDTO;
+import com.mytube.dto.CursorPage;
+import com.mytube.dto.PlaylistDTO;
+import com.mytube.dto.UserDTO;
+import com.mytube.dto.VideoDTO;
+import com.mytube.entity.enums.VideoVisibility;
+import com.mytube.event.ChannelChangedEvent;
+import com.mytube.event.VideoPublishedEvent;
+import com.mytube.event.VideoUnpublishedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Денормализованная сводка страницы канала: шапка со счетчиками, аватар владельца, последнее видео,
+ * плейлисты и первая страница видео хранятся в Redis готовым JSON вместе с ETag, так что открытие
+ * страницы - один HMGET. При промахе сводка собирается тремя запросами и записывается, только если
+ * версия канала за время сборки не сменилась: публикация и скрытие видео или правка шапки
+ * увеличивают версию и удаляют сводку после коммита. Счетчики подписчиков и просмотров в сводке
+ * отстают не больше чем на TTL.
+ */
+@Service
+@Slf4j
+public class ChannelSummaryService {
+
+    private static final String SUMMARY_KEY_PREFIX = "channel:summary:";
+    private static final String VERSION_KEY_PREFIX = "channel:summary:version:";
+    private static final Duration VERSION_TTL = Duration.ofDays(1);
+    private static final String ETAG_FIELD = "etag";
+    private static final String BODY_FIELD = "body";
+
+    // Запись только при неизменной версии: иначе сборка могла прочитать данные до инвалидации
+    private static final RedisScript<Long> STORE = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('HSET', KEYS[2], 'etag', ARGV[2], 'body', ARGV[3])
+            redis.call('EXPIRE', KEYS[2], tonumber(ARGV[4]))
+            return 1
+            """, Long.class);
+
+    // Число видео и просмотров считается по публичным готовым видео через idx_videos_channel_published
+    private static final String HEADER_SQL = """
+            SELECT ch.id, ch.channel_name, ch.description, ch.subscriber_count, ch.created_at,
+                   u.username, u.avatar_url, u.banner_url, s.video_count, s.view_count
+            FROM channels ch
+                     JOIN users u ON u.id = ch.user_id
+                     CROSS JOIN LATERAL (
+                SELECT COUNT(*) AS video_count, COALESCE(SUM(v.view_count), 0) AS view_count
+                FROM videos v
+                WHERE v.channel_id = ch.id AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+                ) s
+            WHERE ch.id = ?
+            """;
+
+    private static final String PLAYLISTS_SQL = """
+            SELECT p.id, p.title, p.description, p.video_count, p.created_at, p.updated_at
+            FROM playlists p
+            WHERE p.channel_id = ? AND p.visibility = 'PUBLIC'
+            ORDER BY p.created_at DESC
+            LIMIT ?
+            """;
+
+    private final VideoService videoService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final int videoPageSize;
+    private final int playlistLimit;
+    private final long ttlSeconds;
+
+    public record Summary(String etag, byte[] body) {
+    }
+
+    public ChannelSummaryService(VideoService videoService,
+                                 JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 StringRedisTemplate redisTemplate,
+                                 @Value("${channels.page.video-page-size:24}") int videoPageSize,
+                                 @Value("${channels.page.playlist-limit:12}") int playlistLimit,
+                                 @Value("${channels.page.ttl-seconds:300}") long ttlSeconds) {
+        this.videoService = videoService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.redisTemplate = redisTemplate;
+        this.videoPageSize = videoPageSize;
+        this.playlistLimit = playlistLimit;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public Summary getSummary(UUID channelId) throws JsonProcessingException {
+        String key = SUMMARY_KEY_PREFIX + channelId;
+        String version;
+        try {
+            List<Object> fields = redisTemplate.opsForHash().multiGet(key, List.of(ETAG_FIELD, BODY_FIELD));
+            if (fields.get(0) != null && fields.get(1) != null) {
+                return new Summary((String) fields.get(0), ((String) fields.get(1)).getBytes(StandardCharsets.UTF_8));
+            }
+            version = redisTemplate.opsForValue().get(VERSION_KEY_PREFIX + channelId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to read summary of channel {}: {}", channelId, e.getMessage());
+            return render(channelId);
+        }
+
+        Summary summary = render(channelId);
+        try {
+            redisTemplate.execute(STORE, List.of(VERSION_KEY_PREFIX + channelId, key),
+                    version != null ? version : "0", summary.etag(),
+                    new String(summary.body(), StandardCharsets.UTF_8), String.valueOf(ttlSeconds));
+        } catch (DataAccessException e) {
+            log.warn("Failed to store summary of channel {}: {}", channelId, e.getMessage());
+        }
+        return summary;
+    }
+
+    @TransactionalEventListener
+    public void onVideoPublished(VideoPublishedEvent event) {
+        invalidate(event.channelId());
+    }
+
+    @TransactionalEventListener
+    public void onVideoUnpublished(VideoUnpublishedEvent event) {
+        invalidate(event.channelId());
+    }
+
+    @TransactionalEventListener
+    public void onChannelChanged(ChannelChangedEvent event) {
+        invalidate(event.channelId());
+    }
+
+    private void invalidate(UUID channelId) {
+        String versionKey = VERSION_KEY_PREFIX + channelId;
+        try {
+            redisTemplate.opsForValue().increment(versionKey);
+            redisTemplate.expire(versionKey, VERSION_TTL);
+            redisTemplate.delete(SUMMARY_KEY_PREFIX + channelId);
+        } catch (DataAccessException e) {
+            // Сводка доживет до TTL
+            log.warn("Failed to invalidate summary of channel {}: {}", channelId, e.getMessage());
+        }
+    }
+
+    private Summary render(UUID channelId) throws JsonProcessingException {
+        ChannelDTO.ChannelPage.ChannelPageBuilder page = jdbcTemplate.query(HEADER_SQL, rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            UserDTO.ChannelInfo channel = UserDTO.ChannelInfo.builder()
+                    .id(rs.getObject("id", UUID.class))
+                    .channelName(rs.getString("channel_name"))
+                    .description(rs.getString("description"))
+                    .subscriberCount(rs.getLong("subscriber_count"))
+                    .videoCount(rs.getLong("video_count"))
+                    .viewCount(rs.getLong("view_count"))
+                    .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                    .build();
+            return ChannelDTO.ChannelPage.builder()
+                    .channel(channel)
+                    .ownerUsername(rs.getString("username"))
+                    .ownerAvatarUrl(rs.getString("avatar_url"))
+                    .bannerUrl(rs.getString("banner_url"));
+        }, channelId);
+        if (page == null) {
+            throw new RuntimeException("Channel not found");
+        }
+
+        List<PlaylistDTO.PlaylistInfo> playlists = jdbcTemplate.query(PLAYLISTS_SQL, (rs, rowNum) ->
+                PlaylistDTO.PlaylistInfo.builder()
+                        .id(rs.getObject("id", UUID.class))
+                        .channelId(channelId)
+                        .title(rs.getString("title"))
+                        .description(rs.getString("description"))
+                        .visibility(VideoVisibility.PUBLIC)
+                        .videoCount(rs.getInt("video_count"))
+                        .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                        .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
+                        .build(), channelId, playlistLimit);
+
+        // Последнее видео - первая карточка той же выдачи (published_at DESC), отдельный запрос не нужен
+        CursorPage<VideoDTO.VideoCard> videos = videoService.getChannelVideos(channelId, null, videoPageSize);
+        VideoDTO.VideoCard latestUpload = videos.getItems().isEmpty() ? null : videos.getItems().get(0);
+
+        byte[] body = objectMapper.writeValueAsBytes(page
+                .latestUpload(latestUpload)
+                .playlists(playlists)
+                .videos(videos)
+                .build());
+        return new Summary("\"" + DigestUtils.md5DigestAsHex(body) + "\"", body);
+    }
+}
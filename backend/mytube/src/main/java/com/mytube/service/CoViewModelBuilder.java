@@ -0,0 +1,336 @@
+package com.mytube.service;
+
+import com.mytube.util.CoViewModel;
+import com.mytube.util.LongIntCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Пакетный расчет модели "с этим смотрят" по video_views. Просмотры читаются курсором, упорядоченные
+ * по зрителю и времени, и режутся на сессии по паузе между просмотрами. Совместные просмотры считаются
+ * параллельно: видео разбиты на партиции по номеру, каждая задача fork-join проходит все сессии,
+ * но считает пары только для своих видео - общих структур и слияния нет. Для каждого видео остается
+ * top-N соседей по косинусной мере, результат пишется в CoViewModel и выкладывается в S3;
+ * узлы подхватывают новую версию через ключ в Redis (см. CoViewService).
+ */
+@Service
+@Slf4j
+public class CoViewModelBuilder {
+
+    static final String CURRENT_MODEL_KEY = "recs:coview:current";
+    private static final String LOCK_KEY = "recs:coview:lock";
+
+    private static final String VIEWS_SQL = """
+            SELECT COALESCE(CAST(vv.user_id AS text), vv.session_id) AS viewer, vv.video_id, vv.viewed_at
+            FROM video_views vv
+            WHERE vv.viewed_at >= ? AND (vv.user_id IS NOT NULL OR vv.session_id IS NOT NULL)
+            ORDER BY viewer, vv.viewed_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final StringRedisTemplate redisTemplate;
+    private final S3Client s3Client;
+    private final String bucket;
+    private final int windowDays;
+    private final Duration sessionGap;
+    private final int maxSessionLength;
+    private final int neighbours;
+    private final int minCoViews;
+    private final int parallelism;
+    private final int fetchSize;
+
+    public CoViewModelBuilder(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              StringRedisTemplate redisTemplate,
+                              S3Client s3Client,
+                              @Value("${recs.coview.bucket:recommendations}") String bucket,
+                              @Value("${recs.coview.window-days:30}") int windowDays,
+                              @Value("${recs.coview.session-gap-minutes:60}") long sessionGapMinutes,
+                              @Value("${recs.coview.max-session-length:50}") int maxSessionLength,
+                              @Value("${recs.coview.neighbours:30}") int neighbours,
+                              @Value("${recs.coview.min-co-views:2}") int minCoViews,
+                              @Value("${recs.coview.parallelism:0}") int parallelism,
+                              @Value("${recs.coview.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.redisTemplate = redisTemplate;
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.windowDays = windowDays;
+        this.sessionGap = Duration.ofMinutes(sessionGapMinutes);
+        this.maxSessionLength = maxSessionLength;
+        this.neighbours = neighbours;
+        this.minCoViews = minCoViews;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Сессии в плоском виде: видео всех сессий подряд в items, границы - в starts.
+     */
+    private static final class Sessions {
+        private int[] items = new int[1 << 16];
+        private int itemCount;
+        private int[] starts = new int[1 << 12];
+        private int sessionCount;
+
+        private void start() {
+            if (sessionCount + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[sessionCount++] = itemCount;
+            starts[sessionCount] = itemCount;
+        }
+
+        private void add(int video) {
+            if (itemCount == items.length) {
+                items = Arrays.copyOf(items, items.length * 2);
+            }
+            items[itemCount++] = video;
+            starts[sessionCount] = itemCount;
+        }
+
+        private int currentLength() {
+            return itemCount - starts[sessionCount - 1];
+        }
+
+        private boolean currentContains(int video) {
+            for (int i = starts[sessionCount - 1]; i < itemCount; i++) {
+                if (items[i] == video) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Scheduled(cron = "${recs.coview.cron:0 30 3 * * *}")
+    public void scheduledBuild() {
+        // Считает один узел; лок с запасом переживает сам расчет
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, "1", Duration.ofHours(6));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            build();
+        } catch (IOException | RuntimeException e) {
+            log.error("Co-view model build failed: {}", e.getMessage());
+        } finally {
+            redisTemplate.delete(LOCK_KEY);
+        }
+    }
+
+    public void build() throws IOException {
+        long started = System.nanoTime();
+        Map<UUID, Integer> ordinals = new HashMap<>();
+        List<UUID> videos = new ArrayList<>();
+        Sessions sessions = new Sessions();
+        readSessions(ordinals, videos, sessions);
+
+        int videoCount = videos.size();
+        // Сколько сессий содержит видео - знаменатель косинусной меры
+        int[] sessionViews = new int[videoCount];
+        for (int i = 0; i < sessions.itemCount; i++) {
+            sessionViews[sessions.items[i]]++;
+        }
+
+        long[][] neighbourLists = new long[videoCount][];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+            for (int partition = 0; partition < parallelism; partition++) {
+                int part = partition;
+                tasks.add(pool.submit(() -> countPartition(part, sessions, sessionViews, neighbourLists)));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        } finally {
+            pool.shutdown();
+        }
+
+        Path file = Files.createTempFile("coview-", ".bin");
+        try {
+            CoViewModel.write(file, videos.toArray(new UUID[0]), neighbourLists);
+            String key = "coview/model-" + System.currentTimeMillis() + ".bin";
+            ensureBucket();
+            s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(), RequestBody.fromFile(file));
+            redisTemplate.opsForValue().set(CURRENT_MODEL_KEY, key);
+            log.info("Co-view model {} built from {} sessions over {} videos in {} s", key, sessions.sessionCount,
+                    videoCount, Duration.ofNanos(System.nanoTime() - started).toSeconds());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void ensureBucket() {
+        try {
+            s3Client.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+        } catch (NoSuchBucketException e) {
+            s3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+        }
+    }
+
+    private void readSessions(Map<UUID, Integer> ordinals, List<UUID> videos, Sessions sessions) {
+        String[] viewer = {null};
+        LocalDateTime[] lastView = {null};
+        RowCallbackHandler handler = rs -> {
+            String currentViewer = rs.getString(1);
+            UUID videoId = rs.getObject(2, UUID.class);
+            LocalDateTime viewedAt = rs.getTimestamp(3).toLocalDateTime();
+
+            boolean newSession = !currentViewer.equals(viewer[0])
+                    || Duration.between(lastView[0], viewedAt).compareTo(sessionGap) > 0;
+            if (newSession) {
+                sessions.start();
+            }
+            viewer[0] = currentViewer;
+            lastView[0] = viewedAt;
+
+            int video = ordinals.computeIfAbsent(videoId, id -> {
+                videos.add(id);
+                return videos.size() - 1;
+            });
+            // Повторы в сессии не усиливают пару, а слишком длинная сессия (бот, автоплей) обрезается
+            if (sessions.currentLength() < maxSessionLength && !sessions.currentContains(video)) {
+                sessions.add(video);
+            }
+        };
+
+        // Курсор PostgreSQL работает только внутри транзакции, иначе драйвер вычитает весь результат в память
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(VIEWS_SQL);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minusDays(windowDays)));
+            return ps;
+        }, handler));
+    }
+
+    private void countPartition(int partition, Sessions sessions, int[] sessionViews, long[][] neighbourLists) {
+        LongIntCounter pairs = new LongIntCounter(1 << 16);
+        for (int s = 0; s < sessions.sessionCount; s++) {
+            int from = sessions.starts[s];
+            int to = sessions.starts[s + 1];
+            for (int i = from; i < to; i++) {
+                int source = sessions.items[i];
+                if (source % parallelism != partition) {
+                    continue;
+                }
+                for (int j = from; j < to; j++) {
+                    if (i != j) {
+                        pairs.increment(((long) source << 32) | sessions.items[j]);
+                    }
+                }
+            }
+        }
+
+        // top-N на видео: мин-куча упакованных (float-биты score << 32 | сосед); у положительных float
+        // порядок битов совпадает с порядком значений. Каждая партиция пишет только в ячейки своих видео
+        int[] sizes = new int[sessionViews.length];
+        pairs.forEach((key, count) -> {
+            if (count < minCoViews) {
+                return;
+            }
+            int source = (int) (key >>> 32);
+            int target = (int) key;
+            float score = (float) (count / Math.sqrt((double) sessionViews[source] * sessionViews[target]));
+            long packed = ((long) Float.floatToIntBits(score) << 32) | target;
+
+            long[] heap = neighbourLists[source];
+            if (heap == null) {
+                heap = new long[neighbours];
+                neighbourLists[source] = heap;
+            }
+            int size = sizes[source];
+            if (size < neighbours) {
+                heap[size] = packed;
+                siftUp(heap, size);
+                sizes[source] = size + 1;
+            } else if (packed > heap[0]) {
+                heap[0] = packed;
+                siftDown(heap, size);
+            }
+        });
+
+        for (int source = partition; source < neighbourLists.length; source += parallelism) {
+            if (neighbourLists[source] != null) {
+                neighbourLists[source] = sortDescending(neighbourLists[source], sizes[source]);
+            }
+        }
+    }
+
+    private static long[] sortDescending(long[] heap, int size) {
+        long[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted);
+        for (int i = 0; i < size / 2; i++) {
+            long tmp = sorted[i];
+            sorted[i] = sorted[size - 1 - i];
+            sorted[size - 1 - i] = tmp;
+        }
+        return sorted;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= heap[index]) {
+                return;
+            }
+            long tmp = heap[parent];
+            heap[parent] = heap[index];
+            heap[index] = tmp;
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < size && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < size && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            long tmp = heap[smallest];
+            heap[smallest] = heap[index];
+            heap[index] = tmp;
+            index = smallest;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mytube.service;
+
+import com.mytube.dto.VideoDTO;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.VideoCardView;
+import com.mytube.util.CoViewModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Рекомендации "с этим смотрят" из модели CoViewModelBuilder. Узел периодически сверяет ключ текущей
+ * модели в Redis, при смене скачивает файл из S3 на локальный диск, отображает его в память и
+ * подменяет ссылку. Запрос - бинарный поиск по отображенному файлу, без обращений к БД и Redis,
+ * кроме загрузки карточек.
+ */
+@Service
+@Slf4j
+public class CoViewService {
+
+    public static final int MAX_RECOMMENDATIONS = 50;
+
+    private final StringRedisTemplate redisTemplate;
+    private final S3Client s3Client;
+    private final VideoRepository videoRepository;
+    private final String bucket;
+    private final Path localDir;
+
+    private volatile CoViewModel model = CoViewModel.EMPTY;
+    private volatile String modelKey;
+
+    public CoViewService(StringRedisTemplate redisTemplate,
+                         S3Client s3Client,
+                         VideoRepository videoRepository,
+                         @Value("${recs.coview.bucket:recommendations}") String bucket,
+                         @Value("${recs.coview.local-dir:${java.io.tmpdir}/mytube-coview}") String localDir) {
+        this.redisTemplate = redisTemplate;
+        this.s3Client = s3Client;
+        this.videoRepository = videoRepository;
+        this.bucket = bucket;
+        this.localDir = Path.of(localDir);
+    }
+
+    public List<VideoDTO.VideoCard> getAlsoWatched(UUID videoId, int limit) {
+        List<UUID> ids = model.neighbours(videoId, Math.min(Math.max(limit, 1), MAX_RECOMMENDATIONS));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Модель строится раз в сутки: скрытые с тех пор видео отсеиваются при загрузке карточек
+        Map<UUID, VideoCardView> byId = new HashMap<>();
+        for (VideoCardView view : videoRepository.findVideoCardsByIds(ids)) {
+            byId.put(view.getId(), view);
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).map(FeedService::toCard).toList();
+    }
+
+    @Scheduled(fixedDelayString = "${recs.coview.poll-interval-ms:60000}")
+    public void refresh() {
+        String current;
+        try {
+            current = redisTemplate.opsForValue().get(CoViewModelBuilder.CURRENT_MODEL_KEY);
+        } catch (RuntimeException e) {
+            log.warn("Failed to check co-view model version: {}", e.getMessage());
+            return;
+        }
+        if (current == null || current.equals(modelKey)) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(localDir);
+            Path target = localDir.resolve(Path.of(current).getFileName());
+            Path partial = localDir.resolve(target.getFileName() + ".part");
+            Files.deleteIfExists(partial);
+            s3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(current).build(), partial);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            CoViewModel loaded = CoViewModel.open(target);
+            Path previous = modelKey != null ? localDir.resolve(Path.of(modelKey).getFileName()) : null;
+            model = loaded;
+            modelKey = current;
+            log.info("Loaded co-view model {} with {} videos", current, loaded.size());
+
+            // Старое отображение живет, пока на него есть ссылки; удаление файла его не ломает
+            if (previous != null && !previous.equals(target)) {
+                Files.deleteIfExists(previous);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load co-view model {}: {}", current, e.getMessage());
+        }
+    }
+}
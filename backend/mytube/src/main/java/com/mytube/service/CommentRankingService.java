@@ -0,0 +1,287 @@
+package com.mytube.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mytube.dto.CommentDTO;
+import com.mytube.dto.CursorPage;
+import com.mytube.event.CommentCreatedEvent;
+import com.mytube.event.CommentDeletedEvent;
+import com.mytube.event.CommentStatsChangedEvent;
+import com.mytube.repository.CommentRepository;
+import com.mytube.repository.projection.CommentView;
+import com.mytube.util.TopCommentCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Рейтинг "топ комментариев". Для каждого видео в Redis лежит sorted set из K лучших корневых
+ * комментариев, его обновляют события реакций и закрепления, а не пересчет на каждый запрос.
+ * Страницы глубже K добираются keyset-запросом по индексу idx_comments_video_root_top,
+ * готовые страницы несколько секунд живут в локальном кэше.
+ */
+@Service
+@Slf4j
+public class CommentRankingService {
+
+    private static final String TOP_KEY_PREFIX = "comments:top:";
+
+    // Закрепленный всегда выше любого количества лайков
+    private static final double PIN_BOOST = 1e12;
+
+    // Обновляем только существующий лидерборд: отсутствующий соберется из БД при чтении
+    private static final RedisScript<Long> UPDATE_IF_PRESENT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -(tonumber(ARGV[3]) + 1))
+            return 1
+            """, Long.class);
+
+    private final CommentRepository commentRepository;
+    private final CommentService commentService;
+    private final VideoService videoService;
+    private final StringRedisTemplate redisTemplate;
+    private final int leaderboardSize;
+    private final Duration leaderboardTtl;
+    private final LoadingCache<PageKey, CursorPage<CommentDTO.CommentItem>> pageCache;
+
+    private record PageKey(UUID videoId, String cursor, int limit) {
+    }
+
+    public CommentRankingService(CommentRepository commentRepository,
+                                 CommentService commentService,
+                                 VideoService videoService,
+                                 StringRedisTemplate redisTemplate,
+                                 @Value("${comments.top.leaderboard-size:500}") int leaderboardSize,
+                                 @Value("${comments.top.leaderboard-ttl-hours:24}") int leaderboardTtlHours,
+                                 @Value("${comments.top.page-cache-ttl-ms:3000}") long pageCacheTtlMillis) {
+        this.commentRepository = commentRepository;
+        this.commentService = commentService;
+        this.videoService = videoService;
+        this.redisTemplate = redisTemplate;
+        this.leaderboardSize = leaderboardSize;
+        this.leaderboardTtl = Duration.ofHours(leaderboardTtlHours);
+        this.pageCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMillis(pageCacheTtlMillis))
+                .build(this::loadPage);
+    }
+
+    /**
+     * Страница топа. Общая часть страницы берется из кэша (одна загрузка на ключ),
+     * реакции текущего пользователя накладываются поверх отдельным запросом.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO.CommentItem> getTopComments(UUID videoId, String cursor, int limit, UUID userId) {
+        // Кэш страниц общий для всех зрителей, поэтому доступ проверяется до него
+        videoService.requireViewable(videoId, userId);
+        int pageSize = Math.min(Math.max(limit, 1), CommentService.MAX_PAGE_SIZE);
+        if (cursor != null && cursor.isBlank()) {
+            cursor = null;
+        }
+        if (cursor != null) {
+            // Битый курсор отклоняем до кэша
+            TopCommentCursor.decode(cursor);
+        }
+
+        CursorPage<CommentDTO.CommentItem> page = pageCache.get(new PageKey(videoId, cursor, pageSize));
+        if (userId == null) {
+            return page;
+        }
+
+        return CursorPage.<CommentDTO.CommentItem>builder()
+                .items(commentService.withReactions(page.getItems(), userId))
+                .nextCursor(page.getNextCursor())
+                .hasMore(page.isHasMore())
+                .build();
+    }
+
+    @TransactionalEventListener
+    public void onCommentStatsChanged(CommentStatsChangedEvent event) {
+        if (event.parentId() != null) {
+            return;
+        }
+
+        updateIfPresent(event.videoId(), event.commentId(),
+                score(event.pinned(), event.likeCount(), event.createdAt()));
+    }
+
+    @TransactionalEventListener
+    public void onCommentCreated(CommentCreatedEvent event) {
+        if (event.parentId() == null) {
+            updateIfPresent(event.videoId(), event.commentId(), score(false, 0, event.createdAt()));
+        }
+    }
+
+    // Удаленный корневой комментарий мог освободить место в топ-K, проще собрать лидерборд заново
+    @TransactionalEventListener
+    public void onCommentDeleted(CommentDeletedEvent event) {
+        if (event.parentId() == null) {
+            evict(event.videoId());
+        }
+    }
+
+    /**
+     * Комментарий удален или лидерборд разошелся с БД - выбрасываем его, следующее чтение пересоберет.
+     */
+    public void evict(UUID videoId) {
+        try {
+            redisTemplate.delete(TOP_KEY_PREFIX + videoId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to evict top comments of video {}: {}", videoId, e.getMessage());
+        }
+    }
+
+    private void updateIfPresent(UUID videoId, UUID commentId, double score) {
+        try {
+            redisTemplate.execute(UPDATE_IF_PRESENT, List.of(TOP_KEY_PREFIX + videoId),
+                    String.valueOf(score), commentId.toString(), String.valueOf(leaderboardSize));
+        } catch (DataAccessException e) {
+            log.warn("Failed to update top comments of video {}: {}", videoId, e.getMessage());
+        }
+    }
+
+    private CursorPage<CommentDTO.CommentItem> loadPage(PageKey key) {
+        TopCommentCursor after = key.cursor() != null ? TopCommentCursor.decode(key.cursor()) : null;
+        int limit = key.limit();
+
+        List<CommentView> rows = new ArrayList<>(limit + 1);
+        boolean fromLeaderboard = after == null || after.inLeaderboard();
+        boolean keysetTail = !fromLeaderboard;
+
+        if (fromLeaderboard) {
+            int start = after != null ? after.rank() : 0;
+            try {
+                long size = ensureLeaderboard(key.videoId());
+                List<UUID> ids = readRange(key.videoId(), start, limit + 1);
+                rows.addAll(hydrate(ids));
+                // Лидерборд закончился на этой странице, но он полный - дальше могут быть комментарии в БД
+                keysetTail = ids.size() <= limit && size >= leaderboardSize;
+            } catch (DataAccessException e) {
+                log.warn("Top comments leaderboard unavailable for video {}: {}", key.videoId(), e.getMessage());
+                rows.clear();
+                keysetTail = true;
+            }
+        }
+
+        if (keysetTail) {
+            int remaining = limit + 1 - rows.size();
+            CommentView last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+            rows.addAll(last != null
+                    ? commentRepository.findTopRootCommentViewsAfter(key.videoId(), last.getIsPinned(),
+                            last.getLikeCount(), last.getCreatedAt(), last.getId(), remaining)
+                    : after != null
+                    ? commentRepository.findTopRootCommentViewsAfter(key.videoId(), after.pinned(),
+                            after.likeCount(), after.createdAt(), after.id(), remaining)
+                    : commentRepository.findTopRootCommentViews(key.videoId(), remaining));
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<CommentView> page = hasMore ? rows.subList(0, limit) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            CommentView last = page.get(page.size() - 1);
+            int nextRank = keysetTail ? TopCommentCursor.KEYSET : (after != null ? after.rank() : 0) + limit;
+            nextCursor = new TopCommentCursor(nextRank, last.getIsPinned(), last.getLikeCount(),
+                    last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPage.<CommentDTO.CommentItem>builder()
+                .items(commentService.toItems(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // Размер лидерборда; пустой ключ собирается заново из K лучших комментариев в БД
+    private long ensureLeaderboard(UUID videoId) {
+        Long size = redisTemplate.opsForZSet().zCard(TOP_KEY_PREFIX + videoId);
+        if (size != null && size > 0) {
+            return size;
+        }
+        return rebuild(videoId);
+    }
+
+    private long rebuild(UUID videoId) {
+        List<CommentView> top = commentRepository.findTopRootCommentViews(videoId, leaderboardSize);
+        if (top.isEmpty()) {
+            return 0;
+        }
+
+        Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+        for (CommentView view : top) {
+            String member = view.getId().toString();
+            tuples.add(new DefaultStringTuple(member.getBytes(StandardCharsets.UTF_8), member,
+                    score(view.getIsPinned(), view.getLikeCount(), view.getCreatedAt())));
+        }
+
+        String key = TOP_KEY_PREFIX + videoId;
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.del(key);
+            redis.zAdd(key, tuples);
+            redis.expire(key, leaderboardTtl.toSeconds());
+            return null;
+        });
+        return top.size();
+    }
+
+    private List<UUID> readRange(UUID videoId, int start, int count) {
+        if (start >= leaderboardSize) {
+            return List.of();
+        }
+        Set<String> members = redisTemplate.opsForZSet()
+                .reverseRange(TOP_KEY_PREFIX + videoId, start, start + count - 1L);
+        if (members == null) {
+            return List.of();
+        }
+        return members.stream().map(UUID::fromString).toList();
+    }
+
+    // Восстанавливает порядок лидерборда; удаленные с тех пор комментарии просто пропадают
+    private List<CommentView> hydrate(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, CommentView> byId = new HashMap<>();
+        for (CommentView view : commentRepository.findCommentViewsByIds(ids)) {
+            byId.put(view.getId(), view);
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Score повторяет порядок индекса: закрепление, затем лайки, затем время создания как дробная часть
+     * (секунды эпохи / 1e10 < 1), поэтому при равных лайках новый комментарий выше старого.
+     */
+    private static double score(boolean pinned, long likeCount, LocalDateTime createdAt) {
+        double recency = createdAt.toEpochSecond(ZoneOffset.UTC) / 1e10;
+        return (pinned ? PIN_BOOST : 0) + likeCount + recency;
+    }
+}
@@ -1,4 +1,262 @@
 package com.mytube.service;
 
+import com.mytube.dto.CommentDTO;
+import com.mytube.dto.CursorPage;
+import com.mytube.entity.enums.ReactionType;
+import com.mytube.entity.Comment;
+import com.mytube.event.CommentCreatedEvent;
+import com.mytube.event.CommentDeletedEvent;
+import com.mytube.event.CommentStatsChangedEvent;
+import com.mytube.repository.CommentRepository;
+import com.mytube.repository.projection.CommentStats;
+import com.mytube.repository.projection.CommentView;
+import com.mytube.repository.projection.DeletedSubtree;
+import com.mytube.repository.projection.ReplyCount;
+import com.mytube.util.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
 public class CommentService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_REPLY_DEPTH = 10;
+
+    // Больше любого символа сегмента пути, так что [path, path + '~') - ровно ветка комментария
+    private static final String PATH_UPPER_BOUND = "~";
+
+    private final CommentRepository commentRepository;
+    private final ReactionService reactionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RateLimiter rateLimiter;
+    private final CounterBuffer counterBuffer;
+    private final VideoService videoService;
+
+    @Value("${comments.rate-limit.user-capacity:5}")
+    private int userBurst;
+
+    @Value("${comments.rate-limit.user-per-minute:10}")
+    private int userPerMinute;
+
+    @Value("${comments.rate-limit.video-capacity:100}")
+    private int videoBurst;
+
+    @Value("${comments.rate-limit.video-per-minute:1200}")
+    private int videoPerMinute;
+
+    /**
+     * Страница корневых комментариев, новые сверху. Курсор - (created_at, id) последнего элемента,
+     * поэтому стоимость любой страницы не зависит от ее номера. На страницу уходит три запроса:
+     * комментарии с авторами, количество ответов и реакции текущего пользователя.
+     * Комментарии видны тем же, кому видно само видео.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO.CommentItem> getRootComments(UUID videoId, String cursor, int limit, UUID userId) {
+        videoService.requireViewable(videoId, userId);
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        List<CommentView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = commentRepository.findRootCommentViews(videoId, pageSize + 1);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = commentRepository.findRootCommentViewsBefore(videoId, after.timestamp(), after.id(), pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<CommentView> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            CommentView last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPage.<CommentDTO.CommentItem>builder()
+                .items(toItems(page, userId))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Публикует комментарий или ответ. Лимиты проверяются до обращения к БД, id генерируется заранее,
+     * чтобы вставка с вычислением пути была одним запросом, а comment_count видео увеличивается
+     * отложенно через CounterBuffer, без блокировки строки видео на каждый комментарий.
+     */
+    @Transactional
+    public CommentDTO.CommentItem createComment(UUID userId, UUID videoId, UUID parentId, String content) {
+        rateLimiter.acquire("comments:user:" + userId, new RateLimiter.Limit(userBurst, userPerMinute / 60.0));
+        rateLimiter.acquire("comments:video:" + videoId, new RateLimiter.Limit(videoBurst, videoPerMinute / 60.0));
+
+        CommentView created = commentRepository.insertComment(UUID.randomUUID(), videoId, userId, parentId, content);
+        if (created == null) {
+            throw new RuntimeException("Video not found, comments disabled or parent comment not found");
+        }
+
+        counterBuffer.addAfterCommit(CounterBuffer.Counter.VIDEO_COMMENTS, videoId, 1);
+        eventPublisher.publishEvent(new CommentCreatedEvent(created.getId(), videoId, created.getParentId(),
+                created.getAuthorId(), created.getAuthorUsername(), created.getAuthorAvatarUrl(),
+                created.getContent(), created.getCreatedAt()));
+
+        return mapToItem(created, 0L, ReactionType.NONE);
+    }
+
+    /**
+     * Ответы на комментарий на глубину до depth уровней в порядке обхода ветки. Курсор - путь
+     * последнего отданного ответа, так что любая страница - один range scan по (root_id, path).
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO.CommentItem> getReplies(UUID commentId, String cursor, int limit, int depth,
+                                                         UUID userId) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        int relativeDepth = Math.min(Math.max(depth, 1), MAX_REPLY_DEPTH);
+
+        Comment anchor = commentRepository.findById(commentId)
+                .orElseThrow(() -> new RuntimeException("Comment not found"));
+        videoService.requireViewable(anchor.getVideo().getId(), userId);
+
+        String after = anchor.getPath();
+        if (cursor != null && !cursor.isBlank()) {
+            after = decodePathCursor(cursor);
+            if (!after.startsWith(anchor.getPath())) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        List<CommentView> rows = commentRepository.findSubtreeSlice(anchor.getRootId(), after,
+                anchor.getPath() + PATH_UPPER_BOUND, anchor.getDepth() + relativeDepth, pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<CommentView> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            nextCursor = encodePathCursor(page.get(page.size() - 1).getPath());
+        }
+
+        return CursorPage.<CommentDTO.CommentItem>builder()
+                .items(toItems(page, userId))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Удаляет комментарий вместе со всеми ответами одним set-based запросом, без обхода сущностей.
+     */
+    @Transactional
+    public long deleteComment(UUID userId, UUID commentId) {
+        DeletedSubtree deleted = commentRepository.deleteSubtree(userId, commentId);
+        if (deleted == null) {
+            throw new RuntimeException("Comment not found or access denied");
+        }
+
+        counterBuffer.addAfterCommit(CounterBuffer.Counter.VIDEO_COMMENTS, deleted.getVideoId(), -deleted.getRemoved());
+        eventPublisher.publishEvent(new CommentDeletedEvent(commentId, deleted.getVideoId(),
+                deleted.getParentId(), deleted.getRemoved()));
+        return deleted.getRemoved();
+    }
+
+    /**
+     * Закрепляет или открепляет корневой комментарий. У видео может быть только один закрепленный,
+     * прежний снимается тем же запросом, по каждому измененному комментарию уходит событие для рейтинга.
+     */
+    @Transactional
+    public void setPinned(UUID userId, UUID commentId, boolean pinned) {
+        List<CommentStats> changed = commentRepository.updatePinned(userId, commentId, pinned);
+        if (changed.isEmpty()) {
+            throw new RuntimeException("Comment not found or access denied");
+        }
+
+        for (CommentStats stats : changed) {
+            eventPublisher.publishEvent(new CommentStatsChangedEvent(stats.getId(), stats.getVideoId(),
+                    stats.getParentId(), stats.getIsPinned(), stats.getLikeCount(), stats.getDislikeCount(),
+                    stats.getCreatedAt()));
+        }
+    }
+
+    List<CommentDTO.CommentItem> toItems(List<CommentView> views, UUID userId) {
+        return withReactions(toItems(views), userId);
+    }
+
+    // Элементы без реакции пользователя - их можно класть в общий кэш
+    List<CommentDTO.CommentItem> toItems(List<CommentView> views) {
+        if (views.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<UUID> ids = views.stream().map(CommentView::getId).toList();
+
+        Map<UUID, Long> replyCounts = new HashMap<>();
+        for (ReplyCount count : commentRepository.countRepliesByParentIds(ids)) {
+            replyCounts.put(count.getParentId(), count.getReplyCount());
+        }
+
+        return views.stream()
+                .map(view -> mapToItem(view, replyCounts.getOrDefault(view.getId(), 0L), ReactionType.NONE))
+                .toList();
+    }
+
+    // Возвращает копии, исходные элементы могут быть общими для всех пользователей
+    List<CommentDTO.CommentItem> withReactions(List<CommentDTO.CommentItem> items, UUID userId) {
+        if (userId == null || items.isEmpty()) {
+            return items;
+        }
+
+        Map<UUID, ReactionType> reactions = reactionService.getCommentReactions(userId,
+                items.stream().map(CommentDTO.CommentItem::getId).toList());
+
+        return items.stream()
+                .map(item -> item.toBuilder()
+                        .myReaction(reactions.getOrDefault(item.getId(), ReactionType.NONE))
+                        .build())
+                .toList();
+    }
+
+    private CommentDTO.CommentItem mapToItem(CommentView view, long replyCount, ReactionType myReaction) {
+        return CommentDTO.CommentItem.builder()
+                .id(view.getId())
+                .parentId(view.getParentId())
+                .depth(view.getDepth())
+                .content(view.getContent())
+                .likeCount(view.getLikeCount())
+                .dislikeCount(view.getDislikeCount())
+                .isPinned(view.getIsPinned())
+                .createdAt(view.getCreatedAt())
+                .replyCount(replyCount)
+                .author(CommentDTO.AuthorSummary.builder()
+                        .id(view.getAuthorId())
+                        .username(view.getAuthorUsername())
+                        .avatarUrl(view.getAuthorAvatarUrl())
+                        .build())
+                .myReaction(myReaction)
+                .build();
+    }
+
+    private String encodePathCursor(String path) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(path.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodePathCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package com.mytube.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отложенные приращения денормализованных счетчиков. Вместо UPDATE строки на каждое событие
+ * дельты копятся в памяти и раз в интервал уходят одним UPDATE ... FROM unnest на счетчик,
+ * так что горячая строка блокируется один раз за flush, а не на каждый комментарий.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CounterBuffer {
+
+    public enum Counter {
+        VIDEO_COMMENTS("videos", "comment_count"),
+        CHANNEL_SUBSCRIBERS("channels", "subscriber_count"),
+        PLAYLIST_VIDEOS("playlists", "video_count");
+
+        private final String table;
+        private final String column;
+
+        Counter(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+
+        private String updateSql() {
+            return "UPDATE " + table + " t SET " + column + " = GREATEST(COALESCE(t." + column + ", 0) + d.delta, 0) "
+                    + "FROM unnest(?::uuid[], ?::bigint[]) AS d(id, delta) WHERE t.id = d.id";
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Counter, Map<UUID, Long>> pending = new ConcurrentHashMap<>();
+
+    public void add(Counter counter, UUID id, long delta) {
+        if (delta != 0) {
+            pending.computeIfAbsent(counter, c -> new ConcurrentHashMap<>()).merge(id, delta, Long::sum);
+        }
+    }
+
+    // Дельта учитывается только если транзакция, в которой произошло событие, закоммитилась
+    public void addAfterCommit(Counter counter, UUID id, long delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(counter, id, delta);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(counter, id, delta);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${counters.flush-interval-ms:2000}")
+    public void flush() {
+        pending.forEach(this::flushCounter);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void flushCounter(Counter counter, Map<UUID, Long> deltas) {
+        List<UUID> ids = new ArrayList<>();
+        List<Long> values = new ArrayList<>();
+        // remove атомарен: приращения, пришедшие после него, попадут в следующий flush
+        for (UUID id : deltas.keySet()) {
+            Long delta = deltas.remove(id);
+            if (delta != null && delta != 0) {
+                ids.add(id);
+                values.add(delta);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(counter.updateSql());
+                ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                ps.setArray(2, connection.createArrayOf("int8", values.toArray()));
+                return ps;
+            });
+        } catch (DataAccessException e) {
+            log.error("Failed to flush {} {} deltas, retrying next time: {}", ids.size(), counter, e.getMessage());
+            for (int i = 0; i < ids.size(); i++) {
+                add(counter, ids.get(i), values.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.mytube.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mytube.dto.CursorPage;
+import com.mytube.dto.VideoDTO;
+import com.mytube.entity.Channel;
+import com.mytube.event.SubscriptionChangedEvent;
+import com.mytube.event.VideoPublishedEvent;
+import com.mytube.repository.ChannelRepository;
+import com.mytube.repository.SubscriptionRepository;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.TimelineEntry;
+import com.mytube.repository.projection.VideoCardView;
+import com.mytube.util.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Лента подписок. Новые видео обычных каналов раскладываются при публикации по inbox'ам подписчиков
+ * (Redis sorted set, score = время публикации), видео крупных каналов не рассылаются, а домешиваются
+ * при чтении k-way слиянием из лент самих каналов. Чтение страницы - один пайплайн в Redis
+ * на page size записей из каждого источника и один запрос карточек по id. Если Redis недоступен,
+ * страница читается напрямую из Postgres по подпискам пользователя.
+ */
+@Service
+@Slf4j
+public class FeedService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private static final String INBOX_KEY_PREFIX = "feed:inbox:";
+    private static final String CHANNEL_KEY_PREFIX = "feed:channel:";
+
+    // Маркер пустой ленты со score 0: ключ есть, но записей нет, пересобирать не нужно
+    private static final String EMPTY_MARKER = "-";
+
+    // Запас на записи с тем же score, что и у курсора
+    private static final int TIE_SLACK = 8;
+
+    // Добавляем только в существующие ленты: неактивным пользователям inbox соберется при следующем чтении
+    private static final RedisScript<Long> ADD_IF_PRESENT = new DefaultRedisScript<>("""
+            local added = 0
+            for _, key in ipairs(KEYS) do
+                if redis.call('EXISTS', key) == 1 then
+                    redis.call('ZADD', key, ARGV[1], ARGV[2])
+                    redis.call('ZREMRANGEBYRANK', key, 0, -(tonumber(ARGV[3]) + 1))
+                    added = added + 1
+                end
+            end
+            return added
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final SubscriptionRepository subscriptionRepository;
+    private final ChannelRepository channelRepository;
+    private final VideoRepository videoRepository;
+    private final int inboxSize;
+    private final int channelTimelineSize;
+    private final long fanoutThreshold;
+    private final int fanoutBatchSize;
+    private final Duration timelineTtl;
+    private final LoadingCache<UUID, List<UUID>> largeChannelSubscriptions;
+    private final ExecutorService fanoutExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private record Entry(String member, double score) {
+    }
+
+    private record Source(String key, boolean inbox, UUID ownerId) {
+    }
+
+    public FeedService(StringRedisTemplate redisTemplate,
+                       SubscriptionRepository subscriptionRepository,
+                       ChannelRepository channelRepository,
+                       VideoRepository videoRepository,
+                       @Value("${feed.inbox-size:500}") int inboxSize,
+                       @Value("${feed.channel-timeline-size:200}") int channelTimelineSize,
+                       @Value("${feed.fanout-threshold:10000}") long fanoutThreshold,
+                       @Value("${feed.fanout-batch-size:1000}") int fanoutBatchSize,
+                       @Value("${feed.timeline-ttl-days:7}") int timelineTtlDays,
+                       @Value("${feed.large-channels-cache-ttl-seconds:300}") int largeChannelsCacheTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.subscriptionRepository = subscriptionRepository;
+        this.channelRepository = channelRepository;
+        this.videoRepository = videoRepository;
+        this.inboxSize = inboxSize;
+        this.channelTimelineSize = channelTimelineSize;
+        this.fanoutThreshold = fanoutThreshold;
+        this.fanoutBatchSize = fanoutBatchSize;
+        this.timelineTtl = Duration.ofDays(timelineTtlDays);
+        this.largeChannelSubscriptions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofSeconds(largeChannelsCacheTtlSeconds))
+                .build(userId -> subscriptionRepository.findLargeChannelIds(userId, fanoutThreshold));
+    }
+
+    public CursorPage<VideoDTO.VideoCard> getSubscriptionFeed(UUID userId, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        KeysetCursor after = cursor != null && !cursor.isBlank() ? KeysetCursor.decode(cursor) : null;
+
+        List<Source> sources = new ArrayList<>();
+        sources.add(new Source(INBOX_KEY_PREFIX + userId, true, userId));
+        for (UUID channelId : largeChannelSubscriptions.get(userId)) {
+            sources.add(new Source(CHANNEL_KEY_PREFIX + channelId, false, channelId));
+        }
+
+        List<List<Entry>> lists;
+        try {
+            lists = readSources(sources, after, pageSize + 1 + TIE_SLACK);
+        } catch (DataAccessException e) {
+            log.warn("Feed of user {} served from database: {}", userId, e.getMessage());
+            return readFromDatabase(userId, after, pageSize);
+        }
+        List<Entry> merged = merge(lists, after, pageSize + 1);
+
+        boolean hasMore = merged.size() > pageSize;
+        List<Entry> page = hasMore ? merged.subList(0, pageSize) : merged;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Entry last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(fromScore(last.score()), UUID.fromString(last.member())).encode();
+        }
+
+        return CursorPage.<VideoDTO.VideoCard>builder()
+                .items(hydrate(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private CursorPage<VideoDTO.VideoCard> readFromDatabase(UUID userId, KeysetCursor after, int pageSize) {
+        List<VideoCardView> rows = after == null
+                ? videoRepository.findSubscriptionVideoCards(userId, pageSize + 1)
+                : videoRepository.findSubscriptionVideoCardsBefore(userId, after.timestamp(), after.id(), pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<VideoCardView> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            VideoCardView last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getPublishedAt(), last.getId()).encode();
+        }
+
+        return CursorPage.<VideoDTO.VideoCard>builder()
+                .items(page.stream().map(FeedService::toCard).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * После подписки в существующий inbox досыпаются последние видео канала, после отписки они
+     * из него убираются. Крупные каналы в inbox не попадают - достаточно перечитать их список.
+     */
+    @TransactionalEventListener
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        largeChannelSubscriptions.invalidate(event.subscriberId());
+        fanoutExecutor.execute(() -> {
+            try {
+                syncInbox(event);
+            } catch (RuntimeException e) {
+                log.error("Failed to sync feed inbox of user {}: {}", event.subscriberId(), e.getMessage());
+            }
+        });
+    }
+
+    @TransactionalEventListener
+    public void onVideoPublished(VideoPublishedEvent event) {
+        fanoutExecutor.execute(() -> {
+            try {
+                fanOut(event);
+            } catch (RuntimeException e) {
+                log.error("Feed fan-out of video {} failed: {}", event.videoId(), e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanoutExecutor.shutdown();
+    }
+
+    private void fanOut(VideoPublishedEvent event) {
+        String score = String.valueOf(toScore(event.publishedAt()));
+        String member = event.videoId().toString();
+
+        // Лента канала ведется для всех каналов: по ней домешиваются крупные и наполняется inbox при подписке
+        redisTemplate.execute(ADD_IF_PRESENT, List.of(CHANNEL_KEY_PREFIX + event.channelId()),
+                score, member, String.valueOf(channelTimelineSize));
+
+        long subscribers = channelRepository.findById(event.channelId())
+                .map(Channel::getSubscriberCount)
+                .orElse(0L);
+        if (subscribers >= fanoutThreshold) {
+            return;
+        }
+
+        UUID after = new UUID(0L, 0L);
+        long delivered = 0;
+        while (true) {
+            List<UUID> batch = subscriptionRepository.findSubscriberIdsAfter(event.channelId(), after, fanoutBatchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            List<String> keys = batch.stream().map(id -> INBOX_KEY_PREFIX + id).toList();
+            Long added = redisTemplate.execute(ADD_IF_PRESENT, keys, score, member, String.valueOf(inboxSize));
+            delivered += added != null ? added : 0;
+
+            after = batch.get(batch.size() - 1);
+            if (batch.size() < fanoutBatchSize) {
+                break;
+            }
+        }
+        log.debug("Video {} pushed to {} inboxes", event.videoId(), delivered);
+    }
+
+    private void syncInbox(SubscriptionChangedEvent event) {
+        String inboxKey = INBOX_KEY_PREFIX + event.subscriberId();
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(inboxKey))) {
+            return;
+        }
+
+        List<Entry> timeline = readSources(List.of(new Source(CHANNEL_KEY_PREFIX + event.channelId(), false,
+                event.channelId())), null, channelTimelineSize).get(0).stream()
+                .filter(entry -> !EMPTY_MARKER.equals(entry.member()))
+                .toList();
+        if (timeline.isEmpty()) {
+            return;
+        }
+
+        if (!event.subscribed()) {
+            redisTemplate.opsForZSet().remove(inboxKey, timeline.stream().map(Entry::member).toArray());
+            return;
+        }
+
+        long subscribers = channelRepository.findById(event.channelId())
+                .map(Channel::getSubscriberCount)
+                .orElse(0L);
+        if (subscribers >= fanoutThreshold) {
+            return;
+        }
+
+        Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+        for (Entry entry : timeline) {
+            tuples.add(new DefaultStringTuple(entry.member().getBytes(StandardCharsets.UTF_8), entry.member(), entry.score()));
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.zAdd(inboxKey, tuples);
+            redis.zRemRangeByRank(inboxKey, 0, -(inboxSize + 1L));
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Entry>> readSources(List<Source> sources, KeysetCursor after, int count) {
+        double max = after != null ? toScore(after.timestamp()) : Double.POSITIVE_INFINITY;
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Source source : sources) {
+                redis.exists(source.key());
+                redis.zRevRangeByScoreWithScores(source.key(), 1, max, 0, count);
+            }
+            return null;
+        });
+
+        List<List<Entry>> lists = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = sources.get(i);
+            boolean exists = Boolean.TRUE.equals(results.get(i * 2));
+
+            if (!exists) {
+                lists.add(rebuild(source).stream().filter(entry -> entry.score() <= max).limit(count).toList());
+                continue;
+            }
+
+            Set<ZSetOperations.TypedTuple<String>> tuples = (Set<ZSetOperations.TypedTuple<String>>) results.get(i * 2 + 1);
+            List<Entry> entries = new ArrayList<>();
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    entries.add(new Entry(tuple.getValue(), Objects.requireNonNullElse(tuple.getScore(), 0.0)));
+                }
+            }
+            lists.add(entries);
+        }
+        return lists;
+    }
+
+    // Слияние отсортированных по убыванию списков; записи до курсора включительно и дубли пропускаются
+    private List<Entry> merge(List<List<Entry>> lists, KeysetCursor after, int limit) {
+        Comparator<Entry> order = Comparator.comparingDouble(Entry::score).thenComparing(Entry::member).reversed();
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> order.compare(
+                lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        double cursorScore = after != null ? toScore(after.timestamp()) : Double.POSITIVE_INFINITY;
+        String cursorMember = after != null ? after.id().toString() : null;
+
+        List<Entry> merged = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<Entry> list = lists.get(head[0]);
+            Entry entry = list.get(head[1]);
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+
+            boolean beforeCursor = entry.score() > cursorScore
+                    || (entry.score() == cursorScore && entry.member().compareTo(cursorMember) >= 0);
+            if (EMPTY_MARKER.equals(entry.member()) || beforeCursor || !seen.add(entry.member())) {
+                continue;
+            }
+            merged.add(entry);
+        }
+        return merged;
+    }
+
+    private List<Entry> rebuild(Source source) {
+        List<TimelineEntry> rows = source.inbox()
+                ? subscriptionRepository.findInboxSeed(source.ownerId(), fanoutThreshold, channelTimelineSize, inboxSize)
+                : videoRepository.findChannelTimeline(source.ownerId(), channelTimelineSize);
+
+        List<Entry> entries = rows.stream()
+                .map(row -> new Entry(row.getId().toString(), toScore(row.getPublishedAt())))
+                .sorted(Comparator.comparingDouble(Entry::score).thenComparing(Entry::member).reversed())
+                .toList();
+
+        Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+        for (Entry entry : entries) {
+            tuples.add(new DefaultStringTuple(entry.member().getBytes(StandardCharsets.UTF_8), entry.member(), entry.score()));
+        }
+        if (tuples.isEmpty()) {
+            tuples.add(new DefaultStringTuple(EMPTY_MARKER.getBytes(StandardCharsets.UTF_8), EMPTY_MARKER, 0));
+        }
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                redis.del(source.key());
+                redis.zAdd(source.key(), tuples);
+                redis.expire(source.key(), timelineTtl.toSeconds());
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Failed to store feed timeline {}: {}", source.key(), e.getMessage());
+        }
+        return entries;
+    }
+
+    private List<VideoDTO.VideoCard> hydrate(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+
+        List<UUID> ids = entries.stream().map(entry -> UUID.fromString(entry.member())).toList();
+        Map<UUID, VideoCardView> cards = new HashMap<>();
+        for (VideoCardView card : videoRepository.findVideoCardsByIds(ids)) {
+            cards.put(card.getId(), card);
+        }
+
+        // Видео, которые успели скрыть или удалить, просто выпадают из страницы
+        return ids.stream()
+                .map(cards::get)
+                .filter(Objects::nonNull)
+                .map(FeedService::toCard)
+                .toList();
+    }
+
+    static VideoDTO.VideoCard toCard(VideoCardView view) {
+        return VideoDTO.VideoCard.builder()
+                .id(view.getId())
+                .title(view.getTitle())
+                .thumbnailUrl(view.getThumbnailUrl())
+                .durationSeconds(view.getDurationSeconds())
+                .viewCount(view.getViewCount())
+                .publishedAt(view.getPublishedAt())
+                .channelId(view.getChannelId())
+                .channelName(view.getChannelName())
+                .channelAvatarUrl(view.getChannelAvatarUrl())
+                .build();
+    }
+
+    private static double toScore(LocalDateTime publishedAt) {
+        return publishedAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromScore(double score) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli((long) score), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,122 @@
+package com.mytube.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mytube.event.VideoPublishedEvent;
+import com.mytube.event.VideoUnpublishedEvent;
+import com.mytube.util.KeysetCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+/**
+ * Кэш страниц главной в виде готового JSON. Страницы одинаковы для всех посетителей, поэтому
+ * запрос в БД и сериализация делаются один раз на страницу и версию ленты. Публикация и скрытие
+ * видео увеличивают глобальную версию в Redis: старые страницы не удаляются, а просто перестают
+ * совпадать по ключу и вытесняются сами. Версию каждый узел перечитывает не чаще раза в интервал.
+ */
+@Service
+@Slf4j
+public class HomeFeedCache {
+
+    private static final String VERSION_KEY = "feed:version";
+
+    private final VideoService videoService;
+    private final ObjectMapper objectMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final long versionCheckNanos;
+    private final LoadingCache<PageKey, byte[]> pages;
+
+    private volatile long version;
+    private volatile long versionCheckedAt;
+
+    private record PageKey(long version, String cursor, int limit) {
+    }
+
+    public HomeFeedCache(VideoService videoService,
+                         ObjectMapper objectMapper,
+                         StringRedisTemplate redisTemplate,
+                         @Value("${feed.home.version-check-ms:1000}") long versionCheckMillis,
+                         @Value("${feed.home.page-cache-size:2000}") long pageCacheSize,
+                         @Value("${feed.home.page-cache-ttl-seconds:300}") long pageCacheTtlSeconds) {
+        this.videoService = videoService;
+        this.objectMapper = objectMapper;
+        this.redisTemplate = redisTemplate;
+        this.versionCheckNanos = Duration.ofMillis(versionCheckMillis).toNanos();
+        this.versionCheckedAt = System.nanoTime() - versionCheckNanos;
+        // LoadingCache загружает ключ один раз, одновременные промахи ждут ту же загрузку
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(pageCacheSize)
+                .expireAfterWrite(Duration.ofSeconds(pageCacheTtlSeconds))
+                .build(this::render);
+    }
+
+    public byte[] getPage(String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), VideoService.MAX_PAGE_SIZE);
+        if (cursor != null && cursor.isBlank()) {
+            cursor = null;
+        }
+        if (cursor != null) {
+            // Битый курсор отклоняем до кэша
+            KeysetCursor.decode(cursor);
+        }
+        return pages.get(new PageKey(currentVersion(), cursor, pageSize));
+    }
+
+    @TransactionalEventListener
+    public void onVideoPublished(VideoPublishedEvent event) {
+        bumpVersion();
+    }
+
+    @TransactionalEventListener
+    public void onVideoUnpublished(VideoUnpublishedEvent event) {
+        bumpVersion();
+    }
+
+    private void bumpVersion() {
+        try {
+            Long bumped = redisTemplate.opsForValue().increment(VERSION_KEY);
+            if (bumped != null) {
+                advance(bumped);
+                return;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to bump home feed version: {}", e.getMessage());
+        }
+        // Хотя бы этот узел не отдаст устаревшие страницы; остальные дождутся TTL страниц
+        pages.invalidateAll();
+    }
+
+    private long currentVersion() {
+        long now = System.nanoTime();
+        if (now - versionCheckedAt < versionCheckNanos) {
+            return version;
+        }
+
+        versionCheckedAt = now;
+        try {
+            String value = redisTemplate.opsForValue().get(VERSION_KEY);
+            advance(value != null ? Long.parseLong(value) : 0L);
+        } catch (DataAccessException | NumberFormatException e) {
+            log.warn("Failed to read home feed version: {}", e.getMessage());
+        }
+        return version;
+    }
+
+    private synchronized void advance(long value) {
+        if (value > version) {
+            version = value;
+        }
+    }
+
+    private byte[] render(PageKey key) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(videoService.getPublicVideos(key.cursor(), key.limit()));
+    }
+}
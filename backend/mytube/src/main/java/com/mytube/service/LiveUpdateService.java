@@ -0,0 +1,408 @@
+package com.mytube.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytube.dto.CommentDTO;
+import com.mytube.dto.LiveDTO;
+import com.mytube.event.CommentCreatedEvent;
+import com.mytube.event.CommentStatsChangedEvent;
+import com.mytube.event.VideoStatsChangedEvent;
+import com.mytube.event.ViewCountsFlushedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Живые обновления страницы видео по SSE: новые комментарии, счетчики реакций и просмотров.
+ * События уходят в Redis pub/sub, каждый узел получает их и копит для своих подключений,
+ * а клиентам отправляет раз в интервал одной пачкой. Соединения обслуживаются асинхронно,
+ * запись идет на виртуальных потоках. Пачки ставятся в очередь клиента и отправляются по порядку;
+ * клиента, очередь которого переполнилась, отключаем - при переподключении он догрузит ленту сам.
+ */
+@Service
+@Slf4j
+public class LiveUpdateService implements MessageListener {
+
+    private static final String CHANNEL_PREFIX = "live:video:";
+
+    private static final String TYPE_COMMENT = "comment";
+    private static final String TYPE_COMMENT_STATS = "comment-stats";
+    private static final String TYPE_VIDEO_STATS = "video-stats";
+
+    // Больше новых комментариев за тик не шлем, клиент догрузит ленту сам
+    private static final int MAX_COMMENTS_PER_TICK = 50;
+    // Около десяти тиков, полных комментариев
+    private static final int MAX_QUEUED_FRAMES = 500;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final long emitterTimeoutMillis;
+    private final int maxConnections;
+
+    private final Map<UUID, Set<LiveClient>> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<UUID, PendingUpdates> pending = new ConcurrentHashMap<>();
+
+    private static final class LiveClient {
+        private final SseEmitter emitter;
+        private final Queue<Frame> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private LiveClient(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    // Изменения за текущий интервал; flush забирает объект из карты и закрывает, опоздавшие пишущие заводят новый
+    private static final class PendingUpdates {
+        private final List<LiveDTO.NewComment> comments = new ArrayList<>();
+        private final Map<UUID, LiveDTO.CommentCounters> commentCounters = new LinkedHashMap<>();
+        private LiveDTO.VideoCounters videoCounters;
+        private boolean closed;
+    }
+
+    // name == null - служебный комментарий для поддержания соединения
+    private record Frame(String name, String data) {
+        private SseEmitter.SseEventBuilder toEvent() {
+            return name == null ? SseEmitter.event().comment(data) : SseEmitter.event().name(name).data(data);
+        }
+    }
+
+    public LiveUpdateService(StringRedisTemplate redisTemplate,
+                             RedisMessageListenerContainer listenerContainer,
+                             ObjectMapper objectMapper,
+                             @Value("${live.emitter-timeout-ms:1800000}") long emitterTimeoutMillis,
+                             @Value("${live.max-connections:50000}") int maxConnections) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.maxConnections = maxConnections;
+    }
+
+    @PostConstruct
+    public void subscribeToRelay() {
+        // Один шаблонный канал на узел: трафик зависит от числа событий, а не подключений
+        listenerContainer.addMessageListener(this, new PatternTopic(CHANNEL_PREFIX + "*"));
+    }
+
+    public SseEmitter subscribe(UUID videoId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new IllegalStateException("Too many live connections");
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        LiveClient client = new LiveClient(emitter);
+        clients.compute(videoId, (id, set) -> {
+            Set<LiveClient> result = set != null ? set : ConcurrentHashMap.newKeySet();
+            result.add(client);
+            return result;
+        });
+
+        emitter.onCompletion(() -> unregister(videoId, client));
+        emitter.onTimeout(() -> unregister(videoId, client));
+        emitter.onError(e -> unregister(videoId, client));
+
+        try {
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            unregister(videoId, client);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onCommentCreated(CommentCreatedEvent event) {
+        relay(List.of(envelope(TYPE_COMMENT, event.videoId(), LiveDTO.NewComment.builder()
+                .id(event.commentId())
+                .parentId(event.parentId())
+                .content(event.content())
+                .createdAt(event.createdAt())
+                .author(CommentDTO.AuthorSummary.builder()
+                        .id(event.authorId())
+                        .username(event.authorUsername())
+                        .avatarUrl(event.authorAvatarUrl())
+                        .build())
+                .build())));
+    }
+
+    @TransactionalEventListener
+    public void onCommentStatsChanged(CommentStatsChangedEvent event) {
+        relay(List.of(envelope(TYPE_COMMENT_STATS, event.videoId(), LiveDTO.CommentCounters.builder()
+                .commentId(event.commentId())
+                .likeCount(event.likeCount())
+                .dislikeCount(event.dislikeCount())
+                .isPinned(event.pinned())
+                .build())));
+    }
+
+    @TransactionalEventListener
+    public void onVideoStatsChanged(VideoStatsChangedEvent event) {
+        relay(List.of(envelope(TYPE_VIDEO_STATS, event.videoId(), LiveDTO.VideoCounters.builder()
+                .videoId(event.videoId())
+                .likeCount(event.likeCount())
+                .dislikeCount(event.dislikeCount())
+                .build())));
+    }
+
+    // Счетчики просмотров пишутся вне транзакции пакетным flush'ем, поэтому обычный слушатель
+    @EventListener
+    public void onViewCountsFlushed(ViewCountsFlushedEvent event) {
+        List<LiveDTO.Envelope> envelopes = new ArrayList<>(event.viewCounts().size());
+        event.viewCounts().forEach((videoId, viewCount) ->
+                envelopes.add(envelope(TYPE_VIDEO_STATS, videoId, LiveDTO.VideoCounters.builder()
+                        .videoId(videoId)
+                        .viewCount(viewCount)
+                        .build())));
+        relay(envelopes);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            LiveDTO.Envelope envelope = objectMapper.readValue(message.getBody(), LiveDTO.Envelope.class);
+            // Узлу без подписчиков на это видео копить нечего
+            if (clients.containsKey(envelope.getVideoId())) {
+                merge(envelope);
+            }
+        } catch (IOException e) {
+            log.warn("Skipping malformed live update: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedRateString = "${live.flush-interval-ms:1000}")
+    public void flush() {
+        // Забираем по одному видео: запись в уже забранный объект увидит closed и уйдет в новый
+        for (UUID videoId : pending.keySet()) {
+            PendingUpdates updates = pending.remove(videoId);
+            if (updates == null) {
+                continue;
+            }
+            List<Frame> frames = toFrames(updates);
+            Set<LiveClient> targets = clients.get(videoId);
+            if (targets != null && !frames.isEmpty()) {
+                targets.forEach(client -> dispatch(videoId, client, frames));
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${live.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        // Держит соединение через прокси и заодно находит отвалившихся клиентов
+        List<Frame> ping = List.of(new Frame(null, "ping"));
+        clients.forEach((videoId, targets) -> targets.forEach(client -> {
+            if (client.queue.isEmpty()) {
+                dispatch(videoId, client, ping);
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.values().forEach(targets -> targets.forEach(client -> client.emitter.complete()));
+        sendExecutor.shutdownNow();
+    }
+
+    private void dispatch(UUID videoId, LiveClient client, List<Frame> frames) {
+        if (client.closed) {
+            return;
+        }
+        if (client.queued.addAndGet(frames.size()) > MAX_QUEUED_FRAMES) {
+            log.debug("Dropping slow live client of video {}", videoId);
+            unregister(videoId, client);
+            client.emitter.complete();
+            return;
+        }
+        client.queue.addAll(frames);
+        drain(videoId, client);
+    }
+
+    // Одна отправка на клиента за раз; кадры, пришедшие во время отправки, забирает та же или следующая
+    private void drain(UUID videoId, LiveClient client) {
+        if (!client.sending.compareAndSet(false, true)) {
+            return;
+        }
+
+        sendExecutor.execute(() -> {
+            try {
+                Frame frame;
+                while (!client.closed && (frame = client.queue.poll()) != null) {
+                    client.queued.decrementAndGet();
+                    client.emitter.send(frame.toEvent());
+                }
+            } catch (IOException | IllegalStateException e) {
+                unregister(videoId, client);
+                client.emitter.completeWithError(e);
+            } finally {
+                client.sending.set(false);
+            }
+            if (!client.closed && !client.queue.isEmpty()) {
+                drain(videoId, client);
+            }
+        });
+    }
+
+    private void unregister(UUID videoId, LiveClient client) {
+        client.closed = true;
+        boolean[] removed = new boolean[1];
+        clients.computeIfPresent(videoId, (id, set) -> {
+            removed[0] = set.remove(client);
+            return set.isEmpty() ? null : set;
+        });
+        if (removed[0]) {
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    private void relay(List<LiveDTO.Envelope> envelopes) {
+        if (envelopes.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<String> payloads = new ArrayList<>(envelopes.size());
+            for (LiveDTO.Envelope envelope : envelopes) {
+                payloads.add(objectMapper.writeValueAsString(envelope));
+            }
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (int i = 0; i < envelopes.size(); i++) {
+                    redis.publish(CHANNEL_PREFIX + envelopes.get(i).getVideoId(), payloads.get(i));
+                }
+                return null;
+            });
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize live update: {}", e.getMessage());
+        } catch (DataAccessException e) {
+            // Без Redis хотя бы подписчики этого узла получат обновление
+            log.warn("Failed to relay {} live updates: {}", envelopes.size(), e.getMessage());
+            envelopes.stream()
+                    .filter(envelope -> clients.containsKey(envelope.getVideoId()))
+                    .forEach(this::merge);
+        }
+    }
+
+    private void merge(LiveDTO.Envelope envelope) {
+        while (true) {
+            PendingUpdates updates = pending.computeIfAbsent(envelope.getVideoId(), id -> new PendingUpdates());
+            synchronized (updates) {
+                if (updates.closed) {
+                    continue;
+                }
+                apply(updates, envelope);
+                return;
+            }
+        }
+    }
+
+    private void apply(PendingUpdates updates, LiveDTO.Envelope envelope) {
+        try {
+            switch (envelope.getType()) {
+                case TYPE_COMMENT -> {
+                    if (updates.comments.size() < MAX_COMMENTS_PER_TICK) {
+                        updates.comments.add(objectMapper.treeToValue(envelope.getData(), LiveDTO.NewComment.class));
+                    }
+                }
+                case TYPE_COMMENT_STATS -> {
+                    LiveDTO.CommentCounters counters =
+                            objectMapper.treeToValue(envelope.getData(), LiveDTO.CommentCounters.class);
+                    updates.commentCounters.put(counters.getCommentId(), counters);
+                }
+                case TYPE_VIDEO_STATS -> {
+                    LiveDTO.VideoCounters counters =
+                            objectMapper.treeToValue(envelope.getData(), LiveDTO.VideoCounters.class);
+                    updates.videoCounters = mergeCounters(updates.videoCounters, counters);
+                }
+                default -> log.debug("Unknown live update type: {}", envelope.getType());
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping malformed live update: {}", e.getMessage());
+        }
+    }
+
+    // Последнее значение каждого счетчика за интервал
+    private LiveDTO.VideoCounters mergeCounters(LiveDTO.VideoCounters current, LiveDTO.VideoCounters update) {
+        if (current == null) {
+            return update;
+        }
+        if (update.getLikeCount() != null) {
+            current.setLikeCount(update.getLikeCount());
+        }
+        if (update.getDislikeCount() != null) {
+            current.setDislikeCount(update.getDislikeCount());
+        }
+        if (update.getViewCount() != null) {
+            current.setViewCount(update.getViewCount());
+        }
+        return current;
+    }
+
+    private List<Frame> toFrames(PendingUpdates updates) {
+        synchronized (updates) {
+            updates.closed = true;
+        }
+
+        try {
+            List<Frame> frames = new ArrayList<>();
+            for (LiveDTO.NewComment comment : updates.comments) {
+                frames.add(new Frame(TYPE_COMMENT, objectMapper.writeValueAsString(comment)));
+            }
+            if (!updates.commentCounters.isEmpty()) {
+                frames.add(new Frame(TYPE_COMMENT_STATS,
+                        objectMapper.writeValueAsString(updates.commentCounters.values())));
+            }
+            if (updates.videoCounters != null) {
+                frames.add(new Frame(TYPE_VIDEO_STATS, objectMapper.writeValueAsString(updates.videoCounters)));
+            }
+            return frames;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LiveDTO.Envelope envelope(String type, UUID videoId, Object data) {
+        return LiveDTO.Envelope.builder()
+                .type(type)
+                .videoId(videoId)
+                .data(objectMapper.valueToTree(data))
+                .build();
+    }
+}
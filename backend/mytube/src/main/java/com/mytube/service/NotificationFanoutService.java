@@ -0,0 +1,225 @@
+package com.mytube.service;
+
+import com.mytube.event.VideoPublishedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рассылка уведомлений о новом видео подписчикам канала. Задание создается в той же транзакции,
+ * что и публикация, и обходит подписчиков keyset-батчами: каждый батч - один statement, который
+ * выбирает следующую порцию подписчиков, вставляет уведомления и сдвигает чекпоинт задания.
+ * Упавший узел просто перестает продлевать аренду, и задание продолжает другой с последнего чекпоинта.
+ * Все рассылки делят общий бюджет строк в секунду, чтобы не забивать primary.
+ */
+@Service
+@Slf4j
+public class NotificationFanoutService {
+
+    private static final String CREATE_JOB_SQL = """
+            INSERT INTO notification_fanout_jobs (video_id, channel_id)
+            VALUES (?, ?)
+            ON CONFLICT (video_id) DO NOTHING
+            """;
+
+    // SKIP LOCKED: несколько узлов разбирают разные задания, не дожидаясь друг друга
+    private static final String CLAIM_JOB_SQL = """
+            UPDATE notification_fanout_jobs j
+            SET status = 'RUNNING', lease_token = ?, locked_until = now() + make_interval(secs => ?), updated_at = now()
+            WHERE j.id = (
+                SELECT id FROM notification_fanout_jobs
+                WHERE status <> 'DONE' AND (locked_until IS NULL OR locked_until < now())
+                ORDER BY id
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING j.id, j.video_id
+            """;
+
+    /*
+     * Батч и чекпоинт в одной транзакции: после сбоя батч либо записан вместе с чекпоинтом, либо
+     * не записан вовсе. Чекпоинт читается из строки задания под аренду, так что перехваченное
+     * другим узлом задание здесь не найдется и ничего не будет вставлено. Пустой чекпоинт заменяется
+     * нулевым UUID, а не условием через OR: так батч - range scan по idx_subscriptions_channel_subscriber
+     * от чекпоинта, а не обход всех подписчиков канала с начала.
+     */
+    private static final String PROCESS_BATCH_SQL = """
+            WITH job AS (
+                SELECT j.id, j.video_id, j.channel_id, j.last_subscriber_id
+                FROM notification_fanout_jobs j
+                WHERE j.id = ? AND j.lease_token = ?
+                FOR UPDATE
+            ), batch AS (
+                SELECT s.subscriber_id
+                FROM subscriptions s
+                JOIN job ON s.channel_id = job.channel_id
+                WHERE s.subscriber_id > COALESCE(job.last_subscriber_id, CAST('00000000-0000-0000-0000-000000000000' AS uuid))
+                ORDER BY s.subscriber_id
+                LIMIT ?
+            ), inserted AS (
+                INSERT INTO notifications (user_id, type, video_id)
+                SELECT b.subscriber_id, 'NEW_VIDEO', job.video_id
+                FROM batch b, job
+                ON CONFLICT (user_id, type, video_id) DO NOTHING
+                RETURNING 1
+            ), stats AS (
+                SELECT (SELECT count(*) FROM batch) AS fetched,
+                       (SELECT count(*) FROM inserted) AS inserted,
+                       (SELECT subscriber_id FROM batch ORDER BY subscriber_id DESC LIMIT 1) AS last_id
+            )
+            UPDATE notification_fanout_jobs j
+            SET last_subscriber_id = COALESCE(stats.last_id, j.last_subscriber_id),
+                delivered = j.delivered + stats.inserted,
+                status = CASE WHEN stats.fetched < ? THEN 'DONE' ELSE 'RUNNING' END,
+                lease_token = CASE WHEN stats.fetched < ? THEN NULL ELSE j.lease_token END,
+                locked_until = CASE WHEN stats.fetched < ? THEN NULL ELSE now() + make_interval(secs => ?) END,
+                updated_at = now()
+            FROM job, stats
+            WHERE j.id = job.id
+            RETURNING stats.fetched, j.status, j.delivered
+            """;
+
+    private record ClaimedJob(long id, UUID videoId, UUID leaseToken) {
+    }
+
+    private record BatchResult(long fetched, boolean done, long delivered) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final long rowsPerSecond;
+    private final long leaseSeconds;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore workers;
+
+    // Время начала следующего батча (System.nanoTime) в общем для всех заданий бюджете
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    public NotificationFanoutService(JdbcTemplate jdbcTemplate,
+                                     @Value("${notifications.fanout.batch-size:1000}") int batchSize,
+                                     @Value("${notifications.fanout.rows-per-second:20000}") long rowsPerSecond,
+                                     @Value("${notifications.fanout.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                                     @Value("${notifications.fanout.lease-seconds:60}") long leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.rowsPerSecond = rowsPerSecond;
+        this.leaseSeconds = leaseSeconds;
+        this.workers = new Semaphore(maxConcurrentJobs);
+    }
+
+    // Синхронно, внутри транзакции публикации: задание не потеряется между коммитом и запуском
+    @EventListener
+    public void createJob(VideoPublishedEvent event) {
+        jdbcTemplate.update(CREATE_JOB_SQL, event.videoId(), event.channelId());
+    }
+
+    @TransactionalEventListener
+    public void onVideoPublished(VideoPublishedEvent event) {
+        dispatch();
+    }
+
+    // Подбирает задания, созданные без свободного воркера, и брошенные упавшими узлами
+    @Scheduled(fixedDelayString = "${notifications.fanout.poll-interval-ms:30000}")
+    public void dispatch() {
+        if (!workers.tryAcquire()) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    workers.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            workers.release();
+            log.warn("Failed to start notification fan-out worker: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Прерванные задания продолжатся с чекпоинта после истечения аренды
+        executor.shutdownNow();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ClaimedJob job;
+            try {
+                job = claim();
+            } catch (DataAccessException e) {
+                log.error("Failed to claim notification fan-out job: {}", e.getMessage());
+                return;
+            }
+            if (job == null) {
+                return;
+            }
+
+            try {
+                run(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (DataAccessException e) {
+                log.error("Notification fan-out of video {} failed, will resume after lease expiry: {}",
+                        job.videoId(), e.getMessage());
+            }
+        }
+    }
+
+    private ClaimedJob claim() {
+        UUID leaseToken = UUID.randomUUID();
+        List<ClaimedJob> claimed = jdbcTemplate.query(CLAIM_JOB_SQL,
+                (rs, rowNum) -> new ClaimedJob(rs.getLong(1), rs.getObject(2, UUID.class), leaseToken),
+                leaseToken, leaseSeconds);
+        return claimed.isEmpty() ? null : claimed.get(0);
+    }
+
+    private void run(ClaimedJob job) throws InterruptedException {
+        while (true) {
+            pace();
+
+            List<BatchResult> results = jdbcTemplate.query(PROCESS_BATCH_SQL,
+                    (rs, rowNum) -> new BatchResult(rs.getLong(1), "DONE".equals(rs.getString(2)), rs.getLong(3)),
+                    job.id(), job.leaseToken(), batchSize, batchSize, batchSize, batchSize, leaseSeconds);
+            if (results.isEmpty()) {
+                log.warn("Lost lease on notification fan-out of video {}", job.videoId());
+                return;
+            }
+
+            BatchResult result = results.get(0);
+            if (result.done()) {
+                log.info("Video {} notified {} subscribers", job.videoId(), result.delivered());
+                return;
+            }
+        }
+    }
+
+    // Резервирует окно под батч в общем бюджете и ждет его; на виртуальном потоке sleep ничего не стоит
+    private void pace() throws InterruptedException {
+        long cost = batchSize * 1_000_000_000L / Math.max(rowsPerSecond, 1);
+        long now = System.nanoTime();
+        long start = nextSlot.getAndUpdate(slot -> Math.max(slot, now) + cost);
+        long wait = start - now;
+        if (wait > 0) {
+            Thread.sleep(Duration.ofNanos(wait));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mytube.service;
+
+import com.mytube.dto.CursorPage;
+import com.mytube.dto.NotificationDTO;
+import com.mytube.entity.Notification;
+import com.mytube.repository.NotificationRepository;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.VideoCardView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private final NotificationRepository notificationRepository;
+    private final VideoRepository videoRepository;
+
+    @Transactional(readOnly = true)
+    public CursorPage<NotificationDTO.NotificationItem> getNotifications(UUID userId, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        long beforeId = parseCursor(cursor);
+
+        List<Notification> rows = notificationRepository.findPageBefore(userId, beforeId,
+                PageRequest.of(0, pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<Notification> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<UUID> videoIds = page.stream().map(Notification::getVideoId).filter(Objects::nonNull).distinct().toList();
+        Map<UUID, VideoCardView> cards = new HashMap<>();
+        if (!videoIds.isEmpty()) {
+            for (VideoCardView view : videoRepository.findVideoCardsByIds(videoIds)) {
+                cards.put(view.getId(), view);
+            }
+        }
+
+        List<NotificationDTO.NotificationItem> items = page.stream()
+                .map(notification -> {
+                    VideoCardView card = notification.getVideoId() != null ? cards.get(notification.getVideoId()) : null;
+                    return NotificationDTO.NotificationItem.builder()
+                            .id(notification.getId())
+                            .type(notification.getType())
+                            .isRead(notification.getIsRead())
+                            .createdAt(notification.getCreatedAt())
+                            .video(card != null ? FeedService.toCard(card) : null)
+                            .build();
+                })
+                .toList();
+
+        return CursorPage.<NotificationDTO.NotificationItem>builder()
+                .items(items)
+                .nextCursor(hasMore ? String.valueOf(page.get(page.size() - 1).getId()) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private long parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
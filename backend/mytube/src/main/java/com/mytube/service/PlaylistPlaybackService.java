@@ -0,0 +1,301 @@
+package com.mytube.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mytube.dto.PlaylistDTO;
+import com.mytube.entity.enums.VideoVisibility;
+import com.mytube.event.PlaylistItemsChangedEvent;
+import com.mytube.event.VideoPublishedEvent;
+import com.mytube.event.VideoUnpublishedEvent;
+import com.mytube.repository.PlaylistRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Окно "далее" для воспроизведения плейлиста: следующие K видео с манифестами и превью, чтобы плеер
+ * начал буферизацию следующего видео заранее и переход был без паузы. Окна кэшируются по
+ * (плейлист, версия, текущее видео); любая правка состава плейлиста, а также публикация или скрытие
+ * видео из него увеличивают версию в Redis, и старые окна перестают совпадать по ключу. В режиме
+ * перемешивания порядок - перестановка, полностью определяемая seed'ом: она считается один раз на
+ * seed и версию и не меняется за сессию. Seed'ов у плейлиста конечное число (SHUFFLE_VARIANTS):
+ * перебором seed'ов клиент не заставит узел считать и держать в памяти все новые перестановки.
+ */
+@Service
+@Slf4j
+public class PlaylistPlaybackService {
+
+    public static final int MAX_WINDOW = 10;
+    public static final int SHUFFLE_VARIANTS = 64;
+
+    private static final String VERSION_KEY_PREFIX = "playlist:version:";
+    private static final Duration VERSION_TTL = Duration.ofDays(7);
+
+    private static final String ITEM_COLUMNS = """
+            v.id, v.title, v.thumbnail_url, v.duration_seconds, v.dash_playlist_path
+            """;
+
+    // Окно после текущего видео одним запросом по idx_playlist_videos_position; без текущего - с начала
+    private static final String WINDOW_SQL = "WITH cur AS (SELECT position, id FROM playlist_videos WHERE playlist_id = ? AND video_id = ?) "
+            + "SELECT " + ITEM_COLUMNS + """
+            FROM playlist_videos pv
+                     JOIN videos v ON v.id = pv.video_id
+            WHERE pv.playlist_id = ?
+              AND (NOT EXISTS (SELECT 1 FROM cur) OR (pv.position, pv.id) > (SELECT position, id FROM cur))
+              AND v.status = 'READY' AND v.visibility <> 'PRIVATE'
+            ORDER BY pv.position, pv.id
+            LIMIT ?
+            """;
+
+    private static final String ORDER_SQL = """
+            SELECT pv.video_id
+            FROM playlist_videos pv
+            WHERE pv.playlist_id = ?
+            ORDER BY pv.position, pv.id
+            """;
+
+    // По idx_playlist_videos_video
+    private static final String PLAYLISTS_WITH_VIDEO_SQL = """
+            SELECT pv.playlist_id FROM playlist_videos pv WHERE pv.video_id = ?
+            """;
+
+    private static final String ITEMS_BY_IDS_SQL = "SELECT " + ITEM_COLUMNS + """
+            FROM videos v
+            WHERE v.id = ANY(?) AND v.status = 'READY' AND v.visibility <> 'PRIVATE'
+            """;
+
+    private static final RowMapper<PlaylistDTO.UpNextItem> ITEM_MAPPER = (rs, rowNum) -> PlaylistDTO.UpNextItem.builder()
+            .videoId(rs.getObject("id", UUID.class))
+            .title(rs.getString("title"))
+            .thumbnailUrl(rs.getString("thumbnail_url"))
+            .durationSeconds((Integer) rs.getObject("duration_seconds"))
+            .dashPlaylistPath(rs.getString("dash_playlist_path"))
+            .build();
+
+    private final PlaylistRepository playlistRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final LoadingCache<WindowKey, Window> windows;
+    private final LoadingCache<OrderKey, UUID[]> shuffledOrders;
+    private final LoadingCache<AccessKey, Optional<Access>> accesses;
+
+    // seed == null - обычный порядок
+    private record WindowKey(UUID playlistId, long version, UUID videoId, int size, Long seed) {
+    }
+
+    private record OrderKey(UUID playlistId, long version, long seed) {
+    }
+
+    private record AccessKey(UUID playlistId, long version) {
+    }
+
+    private record Window(List<PlaylistDTO.UpNextItem> items, boolean endOfPlaylist) {
+    }
+
+    private record Access(UUID ownerId, boolean isPrivate) {
+    }
+
+    public PlaylistPlaybackService(PlaylistRepository playlistRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   StringRedisTemplate redisTemplate,
+                                   @Value("${playlists.up-next.cache-size:20000}") long cacheSize,
+                                   @Value("${playlists.up-next.cache-ttl-seconds:600}") long cacheTtlSeconds,
+                                   @Value("${playlists.up-next.shuffle-cache-max-items:1000000}") long shuffleCacheMaxItems) {
+        this.playlistRepository = playlistRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        // TTL ограничивает устаревание, если увеличение версии не дошло до Redis
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build(this::loadWindow);
+        // Вес перестановки - длина плейлиста: кэш ограничен суммарным числом id, а не числом плейлистов
+        this.shuffledOrders = Caffeine.newBuilder()
+                .maximumWeight(shuffleCacheMaxItems)
+                .weigher((OrderKey key, UUID[] order) -> Math.max(order.length, 1))
+                .expireAfterAccess(Duration.ofSeconds(cacheTtlSeconds))
+                .build(this::loadShuffledOrder);
+        this.accesses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build(this::loadAccess);
+    }
+
+    /**
+     * @param videoId текущее видео; null - начало плейлиста
+     * @param seed    seed перемешивания из прошлого ответа; при shuffle без seed выдается новый.
+     *                Любое значение сводится к одному из SHUFFLE_VARIANTS
+     */
+    public PlaylistDTO.UpNext getUpNext(UUID playlistId, UUID viewerId, UUID videoId, int limit,
+                                        boolean shuffle, Long seed) {
+        int size = Math.min(Math.max(limit, 1), MAX_WINDOW);
+        Long shuffleSeed = null;
+        if (shuffle) {
+            shuffleSeed = seed != null
+                    ? Math.floorMod(seed, (long) SHUFFLE_VARIANTS)
+                    : ThreadLocalRandom.current().nextLong(SHUFFLE_VARIANTS);
+        }
+        long version = currentVersion(playlistId);
+
+        Access access = accesses.get(new AccessKey(playlistId, version))
+                .orElseThrow(() -> new RuntimeException("Playlist not found"));
+        if (access.isPrivate() && !access.ownerId().equals(viewerId)) {
+            throw new RuntimeException("Playlist not found");
+        }
+
+        Window window = windows.get(new WindowKey(playlistId, version, videoId, size, shuffleSeed));
+        return PlaylistDTO.UpNext.builder()
+                .items(window.items())
+                .shuffleSeed(shuffleSeed)
+                .endOfPlaylist(window.endOfPlaylist())
+                .build();
+    }
+
+    @TransactionalEventListener
+    public void onPlaylistItemsChanged(PlaylistItemsChangedEvent event) {
+        bumpVersions(List.of(event.playlistId()));
+    }
+
+    // Окна отфильтрованы по доступности видео на момент загрузки: смена доступности устаревает их
+    @TransactionalEventListener
+    public void onVideoPublished(VideoPublishedEvent event) {
+        bumpVersions(playlistsWith(event.videoId()));
+    }
+
+    @TransactionalEventListener
+    public void onVideoUnpublished(VideoUnpublishedEvent event) {
+        bumpVersions(playlistsWith(event.videoId()));
+    }
+
+    private List<UUID> playlistsWith(UUID videoId) {
+        return jdbcTemplate.query(PLAYLISTS_WITH_VIDEO_SQL, (rs, rowNum) -> rs.getObject(1, UUID.class), videoId);
+    }
+
+    private void bumpVersions(Collection<UUID> playlistIds) {
+        if (playlistIds.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (UUID playlistId : playlistIds) {
+                    String key = VERSION_KEY_PREFIX + playlistId;
+                    redis.incr(key);
+                    redis.expire(key, VERSION_TTL.toSeconds());
+                }
+                return null;
+            });
+            return;
+        } catch (DataAccessException e) {
+            log.warn("Failed to bump version of {} playlists: {}", playlistIds.size(), e.getMessage());
+        }
+        // Хотя бы этот узел не отдаст устаревшее окно; остальные дождутся TTL
+        Set<UUID> stale = new HashSet<>(playlistIds);
+        windows.asMap().keySet().removeIf(k -> stale.contains(k.playlistId()));
+        shuffledOrders.asMap().keySet().removeIf(k -> stale.contains(k.playlistId()));
+    }
+
+    private long currentVersion(UUID playlistId) {
+        try {
+            String value = redisTemplate.opsForValue().get(VERSION_KEY_PREFIX + playlistId);
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (DataAccessException | NumberFormatException e) {
+            log.warn("Failed to read version of playlist {}: {}", playlistId, e.getMessage());
+            return 0;
+        }
+    }
+
+    private Optional<Access> loadAccess(AccessKey key) {
+        return playlistRepository.findAccess(key.playlistId())
+                .map(access -> new Access(access.getOwnerId(),
+                        VideoVisibility.PRIVATE.name().equals(access.getVisibility())));
+    }
+
+    private Window loadWindow(WindowKey key) {
+        if (key.seed() != null) {
+            return loadShuffledWindow(key);
+        }
+
+        List<PlaylistDTO.UpNextItem> rows = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(WINDOW_SQL);
+            ps.setObject(1, key.playlistId());
+            ps.setObject(2, key.videoId(), Types.OTHER);
+            ps.setObject(3, key.playlistId());
+            ps.setInt(4, key.size() + 1);
+            return ps;
+        }, ITEM_MAPPER);
+
+        boolean hasMore = rows.size() > key.size();
+        return new Window(List.copyOf(hasMore ? rows.subList(0, key.size()) : rows), !hasMore);
+    }
+
+    private Window loadShuffledWindow(WindowKey key) {
+        UUID[] order = shuffledOrders.get(new OrderKey(key.playlistId(), key.version(), key.seed()));
+        int start = key.videoId() == null ? 0 : Arrays.asList(order).indexOf(key.videoId()) + 1;
+
+        // Берем с запасом: часть видео могла стать недоступной после добавления в плейлист
+        int end = Math.min(order.length, start + key.size() * 2);
+        UUID[] candidates = Arrays.copyOfRange(order, start, end);
+        if (candidates.length == 0) {
+            return new Window(List.of(), true);
+        }
+
+        Map<UUID, PlaylistDTO.UpNextItem> byId = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(ITEMS_BY_IDS_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", candidates));
+            return ps;
+        }, ITEM_MAPPER).forEach(item -> byId.put(item.getVideoId(), item));
+
+        List<PlaylistDTO.UpNextItem> items = new ArrayList<>(key.size());
+        int consumed = start;
+        for (UUID id : candidates) {
+            if (items.size() == key.size()) {
+                break;
+            }
+            consumed++;
+            PlaylistDTO.UpNextItem item = byId.get(id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return new Window(List.copyOf(items), consumed >= order.length);
+    }
+
+    // Тасование Фишера-Йетса генератором с заданным seed: одна и та же перестановка на любом узле
+    private UUID[] loadShuffledOrder(OrderKey key) {
+        UUID[] order = jdbcTemplate.query(ORDER_SQL, (rs, rowNum) -> rs.getObject(1, UUID.class), key.playlistId())
+                .toArray(new UUID[0]);
+        SplittableRandom random = new SplittableRandom(key.seed());
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            UUID tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+}
@@ -1,4 +1,435 @@
 package com.mytube.service;
 
+import com.mytube.dto.CursorPage;
+import com.mytube.dto.PlaylistDTO;
+import com.mytube.dto.VideoDTO;
+import com.mytube.entity.Channel;
+import com.mytube.entity.Playlist;
+import com.mytube.entity.enums.SystemPlaylistType;
+import com.mytube.entity.enums.VideoVisibility;
+import com.mytube.event.ChannelChangedEvent;
+import com.mytube.event.PlaylistItemsChangedEvent;
+import com.mytube.repository.ChannelRepository;
+import com.mytube.repository.PlaylistRepository;
+import com.mytube.repository.PlaylistVideoRepository;
+import com.mytube.repository.projection.PlaylistAccess;
+import com.mytube.repository.projection.PlaylistItemView;
+import com.mytube.util.PlaylistCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Плейлисты и их состав. Позиции разреженные: новые элементы встают с шагом POSITION_STEP, а вставка
+ * или перенос между соседями берет середину зазора, так что меняется одна строка, а не все после нее.
+ * Когда зазор становится маленьким, плейлист ставится в очередь фонового уплотнения (равномерная
+ * переразметка); если зазор исчерпан совсем, уплотнение выполняется сразу в той же транзакции.
+ * Пакетные операции - один многострочный запрос на операцию: видео передаются массивом,
+ * позиции пакета раскладываются равным шагом внутри зазора.
+ */
+@Service
+@Slf4j
 public class PlaylistService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final long POSITION_STEP = 1L << 16;
+    // 16 делений пополам от полного шага; после 10 пора уплотнять, пока вставки еще не упираются в соседей
+    private static final long MIN_GAP = 1L << 6;
+    private static final String COMPACTION_QUEUE_KEY = "playlists:compact";
+    private static final int COMPACTION_BATCH = 100;
+    private static final String WATCH_LATER_TITLE = "Watch later";
+
+    // Какие из переданных видео можно добавить в плейлист - одним запросом по массиву
+    private static final String AVAILABLE_VIDEOS_SQL = """
+            SELECT v.id
+            FROM videos v
+            WHERE v.id = ANY(?) AND v.status = 'READY' AND v.visibility <> 'PRIVATE'
+            """;
+
+    // Позиции идут по порядку массива; уже добавленные видео пропускаются, их слоты остаются зазорами
+    private static final String BULK_INSERT_SQL = """
+            INSERT INTO playlist_videos (playlist_id, video_id, position)
+            SELECT ?, u.id, ? + (u.ord - 1) * ?
+            FROM unnest(?::uuid[]) WITH ORDINALITY AS u(id, ord)
+            ON CONFLICT (playlist_id, video_id) DO NOTHING
+            """;
+
+    private static final String BULK_DELETE_SQL = """
+            DELETE FROM playlist_videos
+            WHERE playlist_id = ? AND video_id = ANY(?)
+            """;
+
+    // Видео, которых нет в плейлисте, просто не совпадут с join'ом
+    private static final String BULK_MOVE_SQL = """
+            UPDATE playlist_videos pv
+            SET position = ? + (u.ord - 1) * ?
+            FROM unnest(?::uuid[]) WITH ORDINALITY AS u(id, ord)
+            WHERE pv.playlist_id = ? AND pv.video_id = u.id
+            """;
+
+    // Первая позиция и шаг для вставки подряд нескольких элементов
+    private record Slots(long first, long step) {
+    }
+
+    private final PlaylistRepository playlistRepository;
+    private final PlaylistVideoRepository playlistVideoRepository;
+    private final ChannelRepository channelRepository;
+    private final CounterBuffer counterBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public PlaylistService(PlaylistRepository playlistRepository,
+                           PlaylistVideoRepository playlistVideoRepository,
+                           ChannelRepository channelRepository,
+                           CounterBuffer counterBuffer,
+                           JdbcTemplate jdbcTemplate,
+                           StringRedisTemplate redisTemplate,
+                           ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager) {
+        this.playlistRepository = playlistRepository;
+        this.playlistVideoRepository = playlistVideoRepository;
+        this.channelRepository = channelRepository;
+        this.counterBuffer = counterBuffer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Transactional
+    public PlaylistDTO.PlaylistInfo createPlaylist(UUID userId, PlaylistDTO.CreatePlaylistRequest request) {
+        Channel channel = channelRepository.findByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Channel not found"));
+
+        Playlist playlist = playlistRepository.save(Playlist.builder()
+                .userId(userId)
+                .channel(channel)
+                .title(request.getTitle().trim())
+                .description(request.getDescription())
+                .visibility(request.getVisibility() != null ? request.getVisibility() : VideoVisibility.PUBLIC)
+                .build());
+        if (playlist.getVisibility() == VideoVisibility.PUBLIC) {
+            eventPublisher.publishEvent(new ChannelChangedEvent(channel.getId()));
+        }
+        return toInfo(playlist);
+    }
+
+    @Transactional
+    public PlaylistDTO.PlaylistInfo getWatchLater(UUID userId) {
+        return getPlaylist(watchLaterId(userId), userId);
+    }
+
+    // "Смотреть позже" - обычный приватный плейлист пользователя, создается при первом обращении
+    @Transactional
+    public UUID watchLaterId(UUID userId) {
+        return playlistRepository.findOrCreateSystemPlaylist(userId, SystemPlaylistType.WATCH_LATER.name(),
+                WATCH_LATER_TITLE);
+    }
+
+    @Transactional(readOnly = true)
+    public PlaylistDTO.PlaylistInfo getPlaylist(UUID playlistId, UUID viewerId) {
+        checkReadable(playlistId, viewerId);
+        Playlist playlist = playlistRepository.findById(playlistId)
+                .orElseThrow(() -> new RuntimeException("Playlist not found"));
+        return toInfo(playlist);
+    }
+
+    /**
+     * Элементы плейлиста по порядку. Курсор - (позиция, id строки) последнего элемента,
+     * страница читается по индексу независимо от ее глубины.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<VideoDTO.VideoCard> getItems(UUID playlistId, UUID viewerId, String cursor, int limit) {
+        checkReadable(playlistId, viewerId);
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        List<PlaylistItemView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = playlistVideoRepository.findItems(playlistId, pageSize + 1);
+        } else {
+            PlaylistCursor after = PlaylistCursor.decode(cursor);
+            rows = playlistVideoRepository.findItemsAfter(playlistId, after.position(), after.itemId(), pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<PlaylistItemView> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            PlaylistItemView last = page.get(page.size() - 1);
+            nextCursor = new PlaylistCursor(last.getPosition(), last.getItemId()).encode();
+        }
+
+        return CursorPage.<VideoDTO.VideoCard>builder()
+                .items(page.stream().map(FeedService::toCard).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // Повторное добавление того же видео - no-op
+    @Transactional
+    public void addVideo(UUID userId, UUID playlistId, PlaylistDTO.AddVideoRequest request) {
+        lockOwned(userId, playlistId);
+        if (playlistVideoRepository.findPosition(playlistId, request.getVideoId()).isPresent()) {
+            return;
+        }
+
+        long position = resolveSlots(playlistId, request.getAfterVideoId(), request.getBeforeVideoId(), 1).first();
+        if (playlistVideoRepository.insertItem(playlistId, request.getVideoId(), position) == 0) {
+            throw new RuntimeException("Video not found");
+        }
+        counterBuffer.addAfterCommit(CounterBuffer.Counter.PLAYLIST_VIDEOS, playlistId, 1);
+        eventPublisher.publishEvent(new PlaylistItemsChangedEvent(playlistId));
+    }
+
+    @Transactional
+    public void moveVideo(UUID userId, UUID playlistId, UUID videoId, PlaylistDTO.PositionRequest request) {
+        lockOwned(userId, playlistId);
+        if (videoId.equals(request.getAfterVideoId()) || videoId.equals(request.getBeforeVideoId())) {
+            throw new IllegalArgumentException("Video cannot be positioned relative to itself");
+        }
+        if (playlistVideoRepository.findPosition(playlistId, videoId).isEmpty()) {
+            throw new RuntimeException("Video is not in the playlist");
+        }
+
+        long position = resolveSlots(playlistId, request.getAfterVideoId(), request.getBeforeVideoId(), 1).first();
+        playlistVideoRepository.updatePosition(playlistId, videoId, position);
+        eventPublisher.publishEvent(new PlaylistItemsChangedEvent(playlistId));
+    }
+
+    @Transactional
+    public void removeVideo(UUID userId, UUID playlistId, UUID videoId) {
+        lockOwned(userId, playlistId);
+        if (playlistVideoRepository.deleteItem(playlistId, videoId) > 0) {
+            counterBuffer.addAfterCommit(CounterBuffer.Counter.PLAYLIST_VIDEOS, playlistId, -1);
+            eventPublisher.publishEvent(new PlaylistItemsChangedEvent(playlistId));
+        }
+    }
+
+    /**
+     * Пакетное добавление. Видео проверяются одним запросом по массиву, вставка - одним INSERT;
+     * видео, уже лежащие в плейлисте, молча пропускаются, недоступные возвращаются в rejectedVideoIds.
+     */
+    @Transactional
+    public PlaylistDTO.BulkResult addVideos(UUID userId, UUID playlistId, PlaylistDTO.BulkRequest request) {
+        lockOwned(userId, playlistId);
+        List<UUID> requested = distinct(request.getVideoIds());
+
+        Set<UUID> available = new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(AVAILABLE_VIDEOS_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", requested.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getObject(1, UUID.class)));
+
+        List<UUID> accepted = requested.stream().filter(available::contains).toList();
+        List<UUID> rejected = requested.stream().filter(id -> !available.contains(id)).toList();
+        if (accepted.isEmpty()) {
+            return bulkResult(0, rejected);
+        }
+
+        Slots slots = resolveSlots(playlistId, request.getAfterVideoId(), request.getBeforeVideoId(), accepted.size());
+        int inserted = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(BULK_INSERT_SQL);
+            ps.setObject(1, playlistId);
+            ps.setLong(2, slots.first());
+            ps.setLong(3, slots.step());
+            ps.setArray(4, connection.createArrayOf("uuid", accepted.toArray()));
+            return ps;
+        });
+        counterBuffer.addAfterCommit(CounterBuffer.Counter.PLAYLIST_VIDEOS, playlistId, inserted);
+        publishIfChanged(playlistId, inserted);
+        return bulkResult(inserted, rejected);
+    }
+
+    @Transactional
+    public PlaylistDTO.BulkResult removeVideos(UUID userId, UUID playlistId, PlaylistDTO.BulkRequest request) {
+        lockOwned(userId, playlistId);
+        List<UUID> requested = distinct(request.getVideoIds());
+
+        int deleted = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(BULK_DELETE_SQL);
+            ps.setObject(1, playlistId);
+            ps.setArray(2, connection.createArrayOf("uuid", requested.toArray()));
+            return ps;
+        });
+        counterBuffer.addAfterCommit(CounterBuffer.Counter.PLAYLIST_VIDEOS, playlistId, -deleted);
+        publishIfChanged(playlistId, deleted);
+        return bulkResult(deleted, List.of());
+    }
+
+    /**
+     * Пакетный перенос: переданные видео встают подряд в заданном порядке на указанное место.
+     */
+    @Transactional
+    public PlaylistDTO.BulkResult moveVideos(UUID userId, UUID playlistId, PlaylistDTO.BulkRequest request) {
+        lockOwned(userId, playlistId);
+        List<UUID> requested = distinct(request.getVideoIds());
+        if ((request.getAfterVideoId() != null && requested.contains(request.getAfterVideoId()))
+                || (request.getBeforeVideoId() != null && requested.contains(request.getBeforeVideoId()))) {
+            throw new IllegalArgumentException("Videos cannot be positioned relative to themselves");
+        }
+
+        Slots slots = resolveSlots(playlistId, request.getAfterVideoId(), request.getBeforeVideoId(), requested.size());
+        int moved = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(BULK_MOVE_SQL);
+            ps.setLong(1, slots.first());
+            ps.setLong(2, slots.step());
+            ps.setArray(3, connection.createArrayOf("uuid", requested.toArray()));
+            ps.setObject(4, playlistId);
+            return ps;
+        });
+        publishIfChanged(playlistId, moved);
+        return bulkResult(moved, List.of());
+    }
+
+    /**
+     * Фоновое уплотнение плейлистов, у которых зазоры между позициями стали маленькими.
+     * Каждый плейлист - отдельная короткая транзакция под той же блокировкой, что и правки состава.
+     */
+    @Scheduled(fixedDelayString = "${playlists.compaction-interval-ms:30000}")
+    public void compactQueued() {
+        List<String> queued;
+        try {
+            queued = redisTemplate.opsForSet().pop(COMPACTION_QUEUE_KEY, COMPACTION_BATCH);
+        } catch (DataAccessException e) {
+            log.warn("Failed to read playlist compaction queue: {}", e.getMessage());
+            return;
+        }
+        if (queued == null) {
+            return;
+        }
+
+        for (String id : queued) {
+            UUID playlistId = UUID.fromString(id);
+            try {
+                Integer moved = transactionTemplate.execute(status -> playlistRepository.lock(playlistId)
+                        .map(locked -> playlistVideoRepository.compact(playlistId, POSITION_STEP))
+                        .orElse(0));
+                log.debug("Compacted playlist {}, {} items renumbered", playlistId, moved);
+            } catch (DataAccessException e) {
+                log.warn("Failed to compact playlist {}: {}", playlistId, e.getMessage());
+            }
+        }
+    }
+
+    private void checkReadable(UUID playlistId, UUID viewerId) {
+        PlaylistAccess access = playlistRepository.findAccess(playlistId)
+                .orElseThrow(() -> new RuntimeException("Playlist not found"));
+        // Чужой приватный плейлист неотличим от несуществующего
+        if (VideoVisibility.PRIVATE.name().equals(access.getVisibility()) && !access.getOwnerId().equals(viewerId)) {
+            throw new RuntimeException("Playlist not found");
+        }
+    }
+
+    private void lockOwned(UUID userId, UUID playlistId) {
+        playlistRepository.lockOwned(playlistId, userId)
+                .orElseThrow(() -> new RuntimeException("Playlist not found"));
+    }
+
+    /**
+     * Место под count элементов подряд: после afterVideoId, перед beforeVideoId или в конце плейлиста.
+     * Вызывается под блокировкой плейлиста.
+     */
+    private Slots resolveSlots(UUID playlistId, UUID afterVideoId, UUID beforeVideoId, int count) {
+        if (afterVideoId != null && beforeVideoId != null) {
+            throw new IllegalArgumentException("Specify either afterVideoId or beforeVideoId");
+        }
+        if (afterVideoId == null && beforeVideoId == null) {
+            Long last = playlistVideoRepository.findLastPosition(playlistId);
+            return new Slots((last == null ? 0 : last) + POSITION_STEP, POSITION_STEP);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            long previous;
+            Long next;
+            if (afterVideoId != null) {
+                previous = anchorPosition(playlistId, afterVideoId);
+                next = playlistVideoRepository.findNextPosition(playlistId, previous);
+                if (next == null) {
+                    return new Slots(previous + POSITION_STEP, POSITION_STEP);
+                }
+            } else {
+                next = anchorPosition(playlistId, beforeVideoId);
+                Long found = playlistVideoRepository.findPreviousPosition(playlistId, next);
+                // Перед первым элементом: зазор до нуля, ниже нуля позиции не уходят
+                previous = found == null ? 0 : found;
+            }
+
+            long step = (next - previous) / (count + 1);
+            if (step >= 1) {
+                if (step < MIN_GAP) {
+                    scheduleCompaction(playlistId);
+                }
+                return new Slots(previous + step, step);
+            }
+            if (attempt > 0) {
+                throw new IllegalArgumentException("Too many videos to insert at one position");
+            }
+            // Зазор исчерпан: переразметка прямо здесь, блокировка плейлиста уже взята
+            playlistVideoRepository.compact(playlistId, POSITION_STEP);
+        }
+    }
+
+    // Уплотнение меняет только значения позиций, не порядок, поэтому события не порождает
+    private void publishIfChanged(UUID playlistId, int affected) {
+        if (affected > 0) {
+            eventPublisher.publishEvent(new PlaylistItemsChangedEvent(playlistId));
+        }
+    }
+
+    private long anchorPosition(UUID playlistId, UUID videoId) {
+        return playlistVideoRepository.findPosition(playlistId, videoId)
+                .orElseThrow(() -> new RuntimeException("Anchor video is not in the playlist"));
+    }
+
+    private void scheduleCompaction(UUID playlistId) {
+        try {
+            redisTemplate.opsForSet().add(COMPACTION_QUEUE_KEY, playlistId.toString());
+        } catch (DataAccessException e) {
+            // Не страшно: при исчерпании зазора уплотнение выполнится синхронно
+            log.warn("Failed to queue playlist {} for compaction: {}", playlistId, e.getMessage());
+        }
+    }
+
+    private static List<UUID> distinct(List<UUID> videoIds) {
+        return List.copyOf(new LinkedHashSet<>(videoIds));
+    }
+
+    private static PlaylistDTO.BulkResult bulkResult(int affected, List<UUID> rejected) {
+        return PlaylistDTO.BulkResult.builder()
+                .affected(affected)
+                .rejectedVideoIds(rejected)
+                .build();
+    }
+
+    private static PlaylistDTO.PlaylistInfo toInfo(Playlist playlist) {
+        return PlaylistDTO.PlaylistInfo.builder()
+                .id(playlist.getId())
+                .channelId(playlist.getChannel() != null ? playlist.getChannel().getId() : null)
+                .systemType(playlist.getSystemType())
+                .title(playlist.getTitle())
+                .description(playlist.getDescription())
+                .visibility(playlist.getVisibility())
+                .videoCount(playlist.getVideoCount())
+                .createdAt(playlist.getCreatedAt())
+                .updatedAt(playlist.getUpdatedAt())
+                .build();
+    }
 }
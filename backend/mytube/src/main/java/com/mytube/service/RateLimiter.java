@@ -0,0 +1,109 @@
+package com.mytube.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mytube.exception.RateLimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token bucket по произвольному ключу. Сначала проверяется локальное ведро узла - всплески отсекаются
+ * без похода в сеть, затем общее ведро в Redis, которое держит лимит для всего кластера.
+ * Если Redis недоступен, решение принимается только по локальному ведру.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    // Время берется у Redis, чтобы расхождение часов узлов не влияло на пополнение
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List<Long>> TOKEN_BUCKET = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local refill_per_ms = tonumber(ARGV[2]) / 1000
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(bucket[1]) or capacity
+            local ts = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * refill_per_ms)
+
+            local allowed = 0
+            local wait = 0
+            if tokens >= 1 then
+                tokens = tokens - 1
+                allowed = 1
+            else
+                wait = math.ceil((1 - tokens) / refill_per_ms)
+            end
+
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refill_per_ms))
+            return {allowed, wait}
+            """, (Class<List<Long>>) (Class) List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Cache<String, TokenBucket> localBuckets = Caffeine.newBuilder()
+            .maximumSize(200_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    public record Limit(int capacity, double refillPerSecond) {
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(int capacity) {
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        // 0 - токен выдан, иначе сколько миллисекунд ждать следующего
+        private synchronized long tryAcquire(Limit limit) {
+            long now = System.nanoTime();
+            tokens = Math.min(limit.capacity(), tokens + (now - lastRefillNanos) / 1e9 * limit.refillPerSecond());
+            lastRefillNanos = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / limit.refillPerSecond() * 1000);
+        }
+    }
+
+    public RateLimiter(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void acquire(String key, Limit limit) {
+        long localWait = localBuckets.get(key, k -> new TokenBucket(limit.capacity())).tryAcquire(limit);
+        if (localWait > 0) {
+            throw new RateLimitExceededException(localWait);
+        }
+
+        List<Long> result;
+        try {
+            result = redisTemplate.execute(TOKEN_BUCKET, List.of(KEY_PREFIX + key),
+                    String.valueOf(limit.capacity()), String.valueOf(limit.refillPerSecond()));
+        } catch (DataAccessException e) {
+            log.warn("Rate limiter for {} falls back to local bucket: {}", key, e.getMessage());
+            return;
+        }
+
+        if (result != null && result.size() == 2 && result.get(0) == 0L) {
+            throw new RateLimitExceededException(result.get(1));
+        }
+    }
+}
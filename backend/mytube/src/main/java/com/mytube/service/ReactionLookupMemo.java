@@ -0,0 +1,30 @@
+package com.mytube.service;
+
+import com.mytube.entity.enums.ReactionType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Реакции текущего пользователя, уже прочитанные в рамках одного HTTP-запроса.
+ * Страница комментариев и лента могут спрашивать одни и те же id несколько раз,
+ * в БД при этом уходит только то, чего еще нет в мемо.
+ */
+@Component
+@RequestScope
+public class ReactionLookupMemo {
+
+    private final Map<UUID, Map<UUID, ReactionType>> videoReactions = new HashMap<>();
+    private final Map<UUID, Map<UUID, ReactionType>> commentReactions = new HashMap<>();
+
+    public Map<UUID, ReactionType> videos(UUID userId) {
+        return videoReactions.computeIfAbsent(userId, id -> new HashMap<>());
+    }
+
+    public Map<UUID, ReactionType> comments(UUID userId) {
+        return commentReactions.computeIfAbsent(userId, id -> new HashMap<>());
+    }
+}
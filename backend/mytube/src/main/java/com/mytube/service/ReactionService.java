@@ -0,0 +1,129 @@
+package com.mytube.service;
+
+import com.mytube.dto.ReactionDTO;
+import com.mytube.entity.enums.ReactionType;
+import com.mytube.event.CommentStatsChangedEvent;
+import com.mytube.event.VideoStatsChangedEvent;
+import com.mytube.repository.CommentReactionRepository;
+import com.mytube.repository.VideoReactionRepository;
+import com.mytube.repository.projection.CommentReactionChange;
+import com.mytube.repository.projection.ReactionChange;
+import com.mytube.repository.projection.ReactionState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReactionService {
+
+    private final VideoReactionRepository videoReactionRepository;
+    private final CommentReactionRepository commentReactionRepository;
+    private final ReactionLookupMemo reactionLookupMemo;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public ReactionDTO.ReactionResult reactToVideo(UUID userId, UUID videoId, ReactionType reaction) {
+        ReactionChange change = reaction == ReactionType.NONE
+                ? videoReactionRepository.clearReaction(userId, videoId)
+                : videoReactionRepository.applyReaction(userId, videoId, reaction == ReactionType.LIKE);
+
+        if (change == null) {
+            throw new RuntimeException("Video not found");
+        }
+
+        if (ReactionType.fromCode(change.getPrevious()) != reaction) {
+            eventPublisher.publishEvent(new VideoStatsChangedEvent(videoId, userId, change.getLikeCount(),
+                    change.getDislikeCount(), reaction == ReactionType.LIKE));
+        }
+
+        if (isRequestBound()) {
+            reactionLookupMemo.videos(userId).put(videoId, reaction);
+        }
+        return toResult(change, reaction);
+    }
+
+    @Transactional
+    public ReactionDTO.ReactionResult reactToComment(UUID userId, UUID commentId, ReactionType reaction) {
+        CommentReactionChange change = reaction == ReactionType.NONE
+                ? commentReactionRepository.clearReaction(userId, commentId)
+                : commentReactionRepository.applyReaction(userId, commentId, reaction == ReactionType.LIKE);
+
+        if (change == null) {
+            throw new RuntimeException("Comment not found");
+        }
+
+        if (ReactionType.fromCode(change.getPrevious()) != reaction) {
+            eventPublisher.publishEvent(new CommentStatsChangedEvent(commentId, change.getVideoId(),
+                    change.getParentId(), change.getIsPinned(), change.getLikeCount(), change.getDislikeCount(),
+                    change.getCreatedAt()));
+        }
+
+        if (isRequestBound()) {
+            reactionLookupMemo.comments(userId).put(commentId, reaction);
+        }
+        return toResult(change, reaction);
+    }
+
+    public Map<UUID, ReactionType> getVideoReactions(UUID userId, Collection<UUID> videoIds) {
+        return lookup(videoIds,
+                isRequestBound() ? reactionLookupMemo.videos(userId) : new HashMap<>(),
+                missing -> videoReactionRepository.findReactionStates(userId, missing));
+    }
+
+    public Map<UUID, ReactionType> getCommentReactions(UUID userId, Collection<UUID> commentIds) {
+        return lookup(commentIds,
+                isRequestBound() ? reactionLookupMemo.comments(userId) : new HashMap<>(),
+                missing -> commentReactionRepository.findReactionStates(userId, missing));
+    }
+
+    // Один IN-запрос на все id, которых еще нет в мемо; отсутствующие реакции запоминаются как NONE
+    private Map<UUID, ReactionType> lookup(Collection<UUID> ids, Map<UUID, ReactionType> memo,
+                                           Function<Set<UUID>, List<ReactionState>> loader) {
+        Set<UUID> missing = new LinkedHashSet<>();
+        for (UUID id : ids) {
+            if (!memo.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (ReactionState state : loader.apply(missing)) {
+                memo.put(state.getTargetId(), ReactionType.fromIsLike(state.getIsLike()));
+            }
+            missing.forEach(id -> memo.putIfAbsent(id, ReactionType.NONE));
+        }
+
+        Map<UUID, ReactionType> result = new HashMap<>();
+        for (UUID id : ids) {
+            result.put(id, memo.get(id));
+        }
+        return result;
+    }
+
+    private boolean isRequestBound() {
+        return RequestContextHolder.getRequestAttributes() != null;
+    }
+
+    private ReactionDTO.ReactionResult toResult(ReactionChange change, ReactionType current) {
+        return ReactionDTO.ReactionResult.builder()
+                .previous(ReactionType.fromCode(change.getPrevious()))
+                .current(current)
+                .likeCount(change.getLikeCount())
+                .dislikeCount(change.getDislikeCount())
+                .build();
+    }
+}
@@ -0,0 +1,435 @@
+package com.mytube.service;
+
+import com.mytube.dto.VideoDTO;
+import com.mytube.event.VideoPublishedEvent;
+import com.mytube.event.VideoTagsChangedEvent;
+import com.mytube.event.VideoUnpublishedEvent;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.VideoCardView;
+import com.mytube.util.LongObjectMap;
+import com.mytube.util.UuidIntMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * "Похожие видео" по общим тегам. Каждый узел держит в памяти инвертированный индекс: тег -> отсортированный
+ * массив порядковых номеров публичных видео. Похожие для видео - слияние списков его тегов с весом
+ * совпадения по IDF тега (редкий общий тег значит больше частого), без join'ов в БД.
+ * Индекс обновляется по видео точечно: изменение тегов или видимости рассылается узлам через Redis,
+ * и каждый перечитывает теги одного видео. Раз в интервал индекс собирается заново, заодно
+ * освобождая номера удаленных видео.
+ */
+@Service
+@Slf4j
+public class RelatedVideoService implements MessageListener {
+
+    public static final int MAX_RELATED = 50;
+
+    private static final String CHANNEL = "tags:video-changed";
+
+    private static final String ALL_VIDEO_TAGS_SQL = """
+            SELECT vt.video_id, vt.tag_id
+            FROM video_tags vt
+                     JOIN videos v ON v.id = vt.video_id
+            WHERE v.visibility = 'PUBLIC' AND v.status = 'READY'
+            ORDER BY vt.video_id
+            """;
+
+    private static final String VIDEO_TAGS_SQL = """
+            SELECT vt.tag_id
+            FROM video_tags vt
+                     JOIN videos v ON v.id = vt.video_id
+            WHERE vt.video_id = ? AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VideoRepository videoRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int maxPostings;
+
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // Видео, обновленные во время пересборки: их надо переприменить к новому индексу
+    private final Set<UUID> refreshedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    private volatile TagIndex index = new TagIndex();
+
+    public RelatedVideoService(JdbcTemplate jdbcTemplate,
+                               VideoRepository videoRepository,
+                               StringRedisTemplate redisTemplate,
+                               RedisMessageListenerContainer listenerContainer,
+                               @Value("${related.max-postings:200000}") int maxPostings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.videoRepository = videoRepository;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.maxPostings = maxPostings;
+    }
+
+    @PostConstruct
+    public void subscribeToChanges() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public List<VideoDTO.VideoCard> getRelatedVideos(UUID videoId, int limit) {
+        List<UUID> ids = index.related(videoId, Math.min(Math.max(limit, 1), MAX_RELATED), maxPostings);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, VideoCardView> byId = new HashMap<>();
+        for (VideoCardView view : videoRepository.findVideoCardsByIds(ids)) {
+            byId.put(view.getId(), view);
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).map(FeedService::toCard).toList();
+    }
+
+    @TransactionalEventListener
+    public void onVideoTagsChanged(VideoTagsChangedEvent event) {
+        broadcast(event.videoId());
+    }
+
+    @TransactionalEventListener
+    public void onVideoPublished(VideoPublishedEvent event) {
+        broadcast(event.videoId());
+    }
+
+    @TransactionalEventListener
+    public void onVideoUnpublished(VideoUnpublishedEvent event) {
+        broadcast(event.videoId());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            UUID videoId = UUID.fromString(new String(message.getBody(), StandardCharsets.UTF_8));
+            refreshExecutor.execute(() -> refresh(videoId));
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping malformed tag change: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        scheduleRebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${related.rebuild-interval-ms:3600000}",
+            initialDelayString = "${related.rebuild-interval-ms:3600000}")
+    public void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                rebuild();
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private void broadcast(UUID videoId) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, videoId.toString());
+        } catch (DataAccessException e) {
+            // Остальные узлы подтянут изменение при следующей пересборке
+            log.warn("Failed to broadcast tag change of video {}: {}", videoId, e.getMessage());
+            refreshExecutor.execute(() -> refresh(videoId));
+        }
+    }
+
+    private void refresh(UUID videoId) {
+        try {
+            long[] tags = jdbcTemplate.queryForList(VIDEO_TAGS_SQL, Long.class, videoId).stream()
+                    .mapToLong(Long::longValue)
+                    .sorted()
+                    .toArray();
+            if (rebuilding.get()) {
+                refreshedDuringRebuild.add(videoId);
+            }
+            index.update(videoId, tags);
+        } catch (DataAccessException e) {
+            log.warn("Failed to refresh tags of video {}: {}", videoId, e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        try {
+            refreshedDuringRebuild.clear();
+            TagIndex rebuilt = new TagIndex();
+            // Теги текущего видео в буфере long[] без боксинга; буфер переиспользуется между видео
+            long[][] current = {new long[16]};
+            int[] count = {0};
+            UUID[] currentVideo = {null};
+            jdbcTemplate.query(ALL_VIDEO_TAGS_SQL, rs -> {
+                UUID videoId = rs.getObject(1, UUID.class);
+                if (!videoId.equals(currentVideo[0])) {
+                    if (currentVideo[0] != null) {
+                        rebuilt.load(currentVideo[0], current[0], count[0]);
+                    }
+                    currentVideo[0] = videoId;
+                    count[0] = 0;
+                }
+                if (count[0] == current[0].length) {
+                    current[0] = Arrays.copyOf(current[0], count[0] * 2);
+                }
+                current[0][count[0]++] = rs.getLong(2);
+            });
+            if (currentVideo[0] != null) {
+                rebuilt.load(currentVideo[0], current[0], count[0]);
+            }
+            rebuilt.seal();
+
+            index = rebuilt;
+            // Запрос сборки мог не увидеть изменения, пришедшие во время нее; повторное применение идемпотентно
+            for (UUID videoId : List.copyOf(refreshedDuringRebuild)) {
+                refreshedDuringRebuild.remove(videoId);
+                refresh(videoId);
+            }
+            log.info("Related videos index rebuilt: {} videos, {} tags", rebuilt.videoCount(), rebuilt.tagCount());
+        } catch (DataAccessException e) {
+            log.error("Failed to rebuild related videos index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Сам индекс на примитивных коллекциях: тег -> постинги в LongObjectMap, UUID -> номер в UuidIntMap,
+     * теги видео - в массиве по номеру. Массивы постингов и тегов неизменяемы: обновление собирает
+     * новый массив и подменяет ссылку, так что читатель всегда видит целый отсортированный список
+     * без блокировок. Писатели сериализуются монитором индекса; удаленный из постингов тег остается
+     * ключом с null, поскольку ключи из LongObjectMap не удаляются.
+     */
+    private static final class TagIndex {
+
+        private static final long[] NO_TAGS = new long[0];
+
+        private final UuidIntMap ordinals = new UuidIntMap(1024);
+        private final LongObjectMap<int[]> postings = new LongObjectMap<>(1024);
+        // Теги видео по номеру; null - видео не в индексе
+        private volatile AtomicReferenceArray<long[]> videoTags = new AtomicReferenceArray<>(1024);
+        private volatile UUID[] videos = new UUID[1024];
+        private int nextOrdinal;
+
+        // Постинги на время сборки: массив с запасом и заполненная длина
+        private LongObjectMap<Posting> building = new LongObjectMap<>(1024);
+
+        private static final class Posting {
+            private int[] list = new int[4];
+            private int size;
+        }
+
+        // Загрузка при сборке: номера выдаются по возрастанию, поэтому постинги сразу отсортированы
+        private void load(UUID videoId, long[] tags, int count) {
+            int ordinal = ordinal(videoId);
+            long[] sorted = Arrays.stream(tags, 0, count).sorted().distinct().toArray();
+            videoTags.set(ordinal, sorted);
+            for (long tag : sorted) {
+                Posting posting = building.get(tag);
+                if (posting == null) {
+                    posting = new Posting();
+                    building.put(tag, posting);
+                }
+                if (posting.size == posting.list.length) {
+                    posting.list = Arrays.copyOf(posting.list, posting.size * 2);
+                }
+                posting.list[posting.size++] = ordinal;
+            }
+        }
+
+        private void seal() {
+            building.forEach((tag, posting) -> postings.put(tag, Arrays.copyOf(posting.list, posting.size)));
+            building = null;
+        }
+
+        private synchronized void update(UUID videoId, long[] tags) {
+            int existing = ordinals.get(videoId);
+            if (existing == UuidIntMap.ABSENT && tags.length == 0) {
+                return;
+            }
+            int ordinal = existing != UuidIntMap.ABSENT ? existing : ordinal(videoId);
+
+            long[] previous = Objects.requireNonNullElse(videoTags.get(ordinal), NO_TAGS);
+            for (long tag : previous) {
+                int[] list = postings.get(tag);
+                if (list != null && Arrays.binarySearch(tags, tag) < 0) {
+                    int[] updated = remove(list, ordinal);
+                    postings.put(tag, updated.length == 0 ? null : updated);
+                }
+            }
+            for (long tag : tags) {
+                if (Arrays.binarySearch(previous, tag) < 0) {
+                    int[] list = postings.get(tag);
+                    postings.put(tag, list == null ? new int[]{ordinal} : insert(list, ordinal));
+                }
+            }
+
+            videoTags.set(ordinal, tags.length == 0 ? null : tags);
+        }
+
+        private List<UUID> related(UUID videoId, int limit, int maxPostings) {
+            int self = ordinals.get(videoId);
+            long[] tags = self != UuidIntMap.ABSENT ? videoTags.get(self) : null;
+            if (tags == null) {
+                return List.of();
+            }
+
+            // Слияние отсортированных постингов: курсоры в куче по текущему номеру видео
+            int[][] lists = new int[tags.length][];
+            double[] weights = new double[tags.length];
+            int listCount = 0;
+            int total = Math.max(ordinals.size(), 1);
+            for (long tag : tags) {
+                int[] list = postings.get(tag);
+                // Слишком частый тег почти ничего не говорит о похожести, а слияние по нему дорогое
+                if (list != null && list.length > 1 && list.length <= maxPostings) {
+                    lists[listCount] = list;
+                    weights[listCount] = Math.log((double) total / list.length) + 1;
+                    listCount++;
+                }
+            }
+
+            PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> Integer.compare(
+                    lists[a[0]][a[1]], lists[b[0]][b[1]]));
+            for (int i = 0; i < listCount; i++) {
+                cursors.add(new int[]{i, 0});
+            }
+
+            // Мин-куча лучших: (score, ordinal)
+            PriorityQueue<double[]> best = new PriorityQueue<>((a, b) -> a[0] != b[0]
+                    ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+            while (!cursors.isEmpty()) {
+                int ordinal = lists[cursors.peek()[0]][cursors.peek()[1]];
+                double score = 0;
+                while (!cursors.isEmpty() && lists[cursors.peek()[0]][cursors.peek()[1]] == ordinal) {
+                    int[] cursor = cursors.poll();
+                    score += weights[cursor[0]];
+                    if (++cursor[1] < lists[cursor[0]].length) {
+                        cursors.add(cursor);
+                    }
+                }
+                if (ordinal == self) {
+                    continue;
+                }
+                if (best.size() < limit) {
+                    best.add(new double[]{score, ordinal});
+                } else if (score > best.peek()[0]) {
+                    best.poll();
+                    best.add(new double[]{score, ordinal});
+                }
+            }
+
+            UUID[] snapshot = videos;
+            List<UUID> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                result.add(snapshot[(int) best.poll()[1]]);
+            }
+            return result.reversed();
+        }
+
+        private int videoCount() {
+            AtomicReferenceArray<long[]> tags = videoTags;
+            int count = 0;
+            for (int i = 0; i < Math.min(nextOrdinal, tags.length()); i++) {
+                if (tags.get(i) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private int tagCount() {
+            int[] count = {0};
+            postings.forEach((tag, list) -> {
+                if (list != null) {
+                    count[0]++;
+                }
+            });
+            return count[0];
+        }
+
+        // Номер выдается один раз и не переиспользуется до следующей пересборки
+        private int ordinal(UUID videoId) {
+            int existing = ordinals.get(videoId);
+            if (existing != UuidIntMap.ABSENT) {
+                return existing;
+            }
+            int ordinal = nextOrdinal++;
+            UUID[] array = videos;
+            if (ordinal >= array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+                AtomicReferenceArray<long[]> tags = videoTags;
+                AtomicReferenceArray<long[]> grown = new AtomicReferenceArray<>(array.length);
+                for (int i = 0; i < tags.length(); i++) {
+                    grown.set(i, tags.get(i));
+                }
+                videoTags = grown;
+            }
+            array[ordinal] = videoId;
+            // Сначала публикуем массивы, потом номер: читатель, увидевший номер, найдет и id, и теги
+            videos = array;
+            ordinals.put(videoId, ordinal);
+            return ordinal;
+        }
+
+        private static int[] insert(int[] list, int ordinal) {
+            int position = Arrays.binarySearch(list, ordinal);
+            if (position >= 0) {
+                return list;
+            }
+            position = -position - 1;
+            int[] result = new int[list.length + 1];
+            System.arraycopy(list, 0, result, 0, position);
+            result[position] = ordinal;
+            System.arraycopy(list, position, result, position + 1, list.length - position);
+            return result;
+        }
+
+        private static int[] remove(int[] list, int ordinal) {
+            int position = Arrays.binarySearch(list, ordinal);
+            if (position < 0) {
+                return list;
+            }
+            int[] result = new int[list.length - 1];
+            System.arraycopy(list, 0, result, 0, position);
+            System.arraycopy(list, position + 1, result, position, list.length - position - 1);
+            return result;
+        }
+    }
+}
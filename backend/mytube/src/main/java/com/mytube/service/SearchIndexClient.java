@@ -0,0 +1,305 @@
+package com.mytube.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mytube.exception.SearchUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Низкоуровневая работа с Elasticsearch: индексы за алиасами и _bulk. Запросы пишутся через RestClient
+ * вручную, чтобы контролировать размер тела _bulk в байтах и повторять только упавшие действия.
+ */
+@Component
+@Slf4j
+public class SearchIndexClient {
+
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /**
+     * Поисковые индексы. Приложение всегда работает с алиасом, реальный индекс - alias-{время создания}.
+     */
+    public enum SearchIndex {
+        VIDEOS("videos", "search/videos-index.json"),
+        CHANNELS("channels", "search/channels-index.json");
+
+        private final String alias;
+        private final String definition;
+
+        SearchIndex(String alias, String definition) {
+            this.alias = alias;
+            this.definition = definition;
+        }
+
+        public String alias() {
+            return alias;
+        }
+    }
+
+    private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+    private final int maxActions;
+    private final long maxBytes;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    public SearchIndexClient(RestClient restClient,
+                             ObjectMapper objectMapper,
+                             @Value("${search.bulk.max-actions:1000}") int maxActions,
+                             @Value("${search.bulk.max-bytes:5242880}") long maxBytes,
+                             @Value("${search.bulk.max-retries:3}") int maxRetries,
+                             @Value("${search.bulk.retry-backoff-ms:200}") long retryBackoffMillis) {
+        this.restClient = restClient;
+        this.objectMapper = objectMapper;
+        this.maxActions = maxActions;
+        this.maxBytes = maxBytes;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    // Создает первый индекс за алиасом, если алиаса еще нет
+    public void ensureIndex(SearchIndex index) {
+        if (!resolveAlias(index).isEmpty()) {
+            return;
+        }
+        String name = createIndex(index);
+        swapAlias(index, name);
+        log.info("Created search index {} for alias {}", name, index.alias());
+    }
+
+    public String createIndex(SearchIndex index) {
+        String name = index.alias() + "-" + LocalDateTime.now().format(INDEX_SUFFIX);
+        Request request = new Request("PUT", "/" + name);
+        request.setJsonEntity(readDefinition(index));
+        perform(request);
+        return name;
+    }
+
+    // Реальные индексы, на которые сейчас указывает алиас
+    public List<String> resolveAlias(SearchIndex index) {
+        try {
+            JsonNode body = perform(new Request("GET", "/_alias/" + index.alias()));
+            List<String> names = new ArrayList<>();
+            body.fieldNames().forEachRemaining(names::add);
+            return names;
+        } catch (SearchUnavailableException e) {
+            if (e.getStatus() == 404) {
+                return List.of();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Атомарно переключает алиас на новый индекс и удаляет прежние.
+     */
+    public void swapAlias(SearchIndex index, String target) {
+        List<String> previous = resolveAlias(index);
+
+        ArrayNode actions = objectMapper.createArrayNode();
+        for (String name : previous) {
+            actions.addObject().putObject("remove").put("index", name).put("alias", index.alias());
+        }
+        actions.addObject().putObject("add").put("index", target).put("alias", index.alias());
+
+        ObjectNode body = objectMapper.createObjectNode();
+        body.set("actions", actions);
+        Request request = new Request("POST", "/_aliases");
+        request.setJsonEntity(body.toString());
+        perform(request);
+
+        for (String name : previous) {
+            if (!name.equals(target)) {
+                perform(new Request("DELETE", "/" + name));
+            }
+        }
+    }
+
+    public void deleteIndex(String name) {
+        perform(new Request("DELETE", "/" + name));
+    }
+
+    // На время полной переиндексации refresh отключается и включается обратно перед переключением алиаса
+    public void setRefreshInterval(String name, String interval) {
+        Request request = new Request("PUT", "/" + name + "/_settings");
+        request.setJsonEntity("{\"index\":{\"refresh_interval\":" + (interval != null ? "\"" + interval + "\"" : "null") + "}}");
+        perform(request);
+        if (interval != null) {
+            perform(new Request("POST", "/" + name + "/_refresh"));
+        }
+    }
+
+    public JsonNode search(SearchIndex index, JsonNode query) {
+        Request request = new Request("POST", "/" + index.alias() + "/_search");
+        request.setJsonEntity(query.toString());
+        return perform(request);
+    }
+
+    public Bulk bulk() {
+        return new Bulk();
+    }
+
+    /**
+     * Накопитель _bulk-запроса. Тело отправляется, как только набирается maxActions действий или maxBytes байт.
+     * Действия, отклоненные с 429 или 5xx, повторяются с экспоненциальной паузой; остальные ошибки документа
+     * (например, несовместимый маппинг) повторять бессмысленно - они логируются и пропускаются.
+     */
+    public class Bulk {
+
+        private final List<byte[]> actions = new ArrayList<>();
+        private long bytes;
+
+        /**
+         * @param createOnly не перезаписывать существующий документ (op_type=create)
+         */
+        public void index(String target, String id, Map<String, Object> document, boolean createOnly) {
+            ObjectNode meta = objectMapper.createObjectNode();
+            ObjectNode action = meta.putObject(createOnly ? "create" : "index").put("_index", target).put("_id", id);
+            // Запись в алиас без индекса за ним не должна молча создать индекс с динамическим маппингом.
+            // Флаг на действии, а не на запросе: переиндексация пишет в тот же _bulk и по имени индекса
+            if (isAlias(target)) {
+                action.put("require_alias", true);
+            }
+            try {
+                add((meta + "\n" + objectMapper.writeValueAsString(document) + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void delete(String target, String id) {
+            ObjectNode meta = objectMapper.createObjectNode();
+            meta.putObject("delete").put("_index", target).put("_id", id);
+            add((meta + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void flush() {
+            List<byte[]> pending = new ArrayList<>(actions);
+            actions.clear();
+            bytes = 0;
+
+            for (int attempt = 0; !pending.isEmpty(); attempt++) {
+                if (attempt > 0) {
+                    if (attempt > maxRetries) {
+                        throw new SearchUnavailableException(503,
+                                pending.size() + " bulk actions still failing after " + maxRetries + " retries");
+                    }
+                    sleep(retryBackoffMillis << (attempt - 1));
+                }
+                pending = send(pending);
+            }
+        }
+
+        private void add(byte[] action) {
+            if (!actions.isEmpty() && (actions.size() >= maxActions || bytes + action.length > maxBytes)) {
+                flush();
+            }
+            actions.add(action);
+            bytes += action.length;
+        }
+
+        // Возвращает действия, которые стоит повторить
+        private List<byte[]> send(List<byte[]> pending) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            pending.forEach(body::writeBytes);
+
+            Request request = new Request("POST", "/_bulk");
+            request.setEntity(new ByteArrayEntity(body.toByteArray(), NDJSON));
+
+            JsonNode response;
+            try {
+                response = perform(request);
+            } catch (SearchUnavailableException e) {
+                if (e.getStatus() == 429 || e.getStatus() >= 500) {
+                    log.warn("Bulk request rejected with {}, retrying", e.getStatus());
+                    return pending;
+                }
+                throw e;
+            }
+            if (!response.path("errors").asBoolean(false)) {
+                return List.of();
+            }
+
+            List<byte[]> retry = new ArrayList<>();
+            Iterator<JsonNode> items = response.path("items").elements();
+            for (int i = 0; items.hasNext(); i++) {
+                JsonNode item = items.next();
+                String operation = item.fieldNames().next();
+                JsonNode result = item.path(operation);
+                int status = result.path("status").asInt();
+                if (status == 429 || status >= 500) {
+                    retry.add(pending.get(i));
+                } else if (status == 404 && !"delete".equals(operation)) {
+                    // require_alias: алиаса нет, порция не должна считаться доставленной
+                    throw new SearchUnavailableException(503, "Search alias is missing: " + result.path("error"));
+                } else if (status >= 400 && status != 404 && status != 409) {
+                    // 404 - удаление отсутствующего документа, 409 - create поверх уже записанного
+                    log.error("Search document {} rejected: {}", result.path("_id").asText(), result.path("error"));
+                }
+            }
+            return retry;
+        }
+    }
+
+    private static boolean isAlias(String name) {
+        for (SearchIndex index : SearchIndex.values()) {
+            if (index.alias.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private JsonNode perform(Request request) {
+        try {
+            Response response = restClient.performRequest(request);
+            try (InputStream content = response.getEntity().getContent()) {
+                return objectMapper.readTree(content);
+            }
+        } catch (ResponseException e) {
+            throw new SearchUnavailableException(e.getResponse().getStatusLine().getStatusCode(), e.getMessage());
+        } catch (IOException e) {
+            throw new SearchUnavailableException(503, e.getMessage());
+        }
+    }
+
+    private String readDefinition(SearchIndex index) {
+        try (InputStream in = new ClassPathResource(index.definition).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchUnavailableException(503, "Interrupted");
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.mytube.service;
+
+import com.mytube.exception.SearchUnavailableException;
+import com.mytube.service.SearchIndexClient.SearchIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Документы поискового индекса и полная переиндексация. Документы собираются из БД по id; видео,
+ * которого больше нет среди публичных и готовых, из индекса удаляется. Полная переиндексация
+ * пишет каталог курсором в новый индекс и переключает на него алиас; пока она идет, SearchOutboxRelay
+ * дублирует изменения и в новый индекс (его имя лежит в Redis), поэтому правки не теряются. Id, которые
+ * relay менял за время обхода, запоминаются и перед переключением алиаса перечитываются из БД поверх
+ * снимка курсора: иначе create из снимка вернул бы документ, удаленный relay'ем после начала обхода.
+ */
+@Service
+@Slf4j
+public class SearchIndexer {
+
+    private static final String REINDEX_KEY_PREFIX = "search:reindex:";
+    private static final String TOUCHED_KEY_PREFIX = "search:reindex:touched:";
+
+    private static final String VIDEO_DOCUMENT_SQL = """
+            SELECT v.id, v.title, v.description, v.duration_seconds, v.view_count, v.like_count, v.published_at,
+                   ch.id AS channel_id, ch.channel_name,
+                   ARRAY(SELECT t.name FROM video_tags vt JOIN tags t ON t.id = vt.tag_id WHERE vt.video_id = v.id) AS tags
+            FROM videos v
+                     JOIN channels ch ON ch.id = v.channel_id
+            WHERE v.visibility = 'PUBLIC' AND v.status = 'READY'
+            """;
+
+    private static final String CHANNEL_DOCUMENT_SQL = """
+            SELECT ch.id, ch.channel_name, ch.description, ch.subscriber_count, ch.video_count
+            FROM channels ch
+            """;
+
+    private final SearchIndexClient client;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final StringRedisTemplate redisTemplate;
+    private final int fetchSize;
+    private final Duration reindexTimeout;
+
+    private final ExecutorService reindexExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<SearchIndex> readyIndices = ConcurrentHashMap.newKeySet();
+
+    public SearchIndexer(SearchIndexClient client,
+                         JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         StringRedisTemplate redisTemplate,
+                         @Value("${search.reindex.fetch-size:1000}") int fetchSize,
+                         @Value("${search.reindex.timeout-minutes:120}") long reindexTimeoutMinutes) {
+        this.client = client;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.redisTemplate = redisTemplate;
+        this.fetchSize = fetchSize;
+        this.reindexTimeout = Duration.ofMinutes(reindexTimeoutMinutes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndices() {
+        try {
+            ensureReady();
+        } catch (SearchUnavailableException e) {
+            // Elasticsearch поднимается дольше приложения; relay повторит перед следующей порцией
+            log.warn("Search indices are not ready yet: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Создает недостающие алиасы. Relay вызывает перед каждой порцией, пока не получится: запись
+     * до появления алиаса создала бы под его именем обычный индекс с динамическим маппингом.
+     */
+    public void ensureReady() {
+        for (SearchIndex index : SearchIndex.values()) {
+            if (!readyIndices.contains(index)) {
+                client.ensureIndex(index);
+                readyIndices.add(index);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reindexExecutor.shutdownNow();
+    }
+
+    /**
+     * Перечитывает документы из БД и пишет их во все целевые индексы: алиас и, если идет переиндексация, новый индекс.
+     */
+    public void apply(SearchIndex index, Collection<UUID> ids, SearchIndexClient.Bulk bulk) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<String> targets = targets(index);
+        if (targets.size() > 1) {
+            // Запоминаем до записи: id, добавленный после чтения списка при догонке, пишется уже поверх снимка
+            String touchedKey = TOUCHED_KEY_PREFIX + targets.get(1);
+            redisTemplate.opsForSet().add(touchedKey, ids.stream().map(UUID::toString).toArray(String[]::new));
+            redisTemplate.expire(touchedKey, reindexTimeout);
+        }
+        write(index, ids, bulk, targets);
+    }
+
+    private void write(SearchIndex index, Collection<UUID> ids, SearchIndexClient.Bulk bulk, List<String> targets) {
+        Set<UUID> missing = new HashSet<>(ids);
+        RowCallbackHandler handler = rs -> {
+            Map<String, Object> document = toDocument(index, rs);
+            UUID id = rs.getObject("id", UUID.class);
+            missing.remove(id);
+            targets.forEach(target -> bulk.index(target, id.toString(), document, false));
+        };
+
+        String sql = documentSql(index) + (index == SearchIndex.VIDEOS ? " AND v.id = ANY(?)" : " WHERE ch.id = ANY(?)");
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+            return ps;
+        }, handler);
+
+        for (UUID id : missing) {
+            targets.forEach(target -> bulk.delete(target, id.toString()));
+        }
+    }
+
+    /**
+     * Запускает полную переиндексацию в фоне. false - она уже идет на каком-то узле.
+     */
+    public boolean startReindex(SearchIndex index) {
+        String name = client.createIndex(index);
+        Boolean acquired = redisTemplate.opsForValue()
+                .setIfAbsent(REINDEX_KEY_PREFIX + index.alias(), name, reindexTimeout);
+        if (!Boolean.TRUE.equals(acquired)) {
+            client.deleteIndex(name);
+            return false;
+        }
+
+        reindexExecutor.execute(() -> {
+            try {
+                reindex(index, name);
+            } catch (RuntimeException e) {
+                log.error("Reindex of {} into {} failed: {}", index.alias(), name, e.getMessage());
+                try {
+                    client.deleteIndex(name);
+                } catch (SearchUnavailableException cleanup) {
+                    log.warn("Failed to drop abandoned index {}: {}", name, cleanup.getMessage());
+                }
+            } finally {
+                redisTemplate.delete(List.of(REINDEX_KEY_PREFIX + index.alias(), TOUCHED_KEY_PREFIX + name));
+            }
+        });
+        return true;
+    }
+
+    private void reindex(SearchIndex index, String name) {
+        log.info("Reindexing {} into {}", index.alias(), name);
+        client.setRefreshInterval(name, "-1");
+
+        SearchIndexClient.Bulk bulk = client.bulk();
+        long[] count = {0};
+        // Курсор PostgreSQL работает только внутри транзакции: без нее драйвер вычитает весь результат в память.
+        // create вместо index: документ, уже записанный relay'ем в новый индекс, свежее снимка курсора;
+        // документ, который relay успел удалить, create вернет - его исправит catchUp
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(documentSql(index));
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            bulk.index(name, rs.getObject("id", UUID.class).toString(), toDocument(index, rs), true);
+            count[0]++;
+        }));
+        bulk.flush();
+        catchUp(index, name);
+
+        client.setRefreshInterval(name, null);
+        client.swapAlias(index, name);
+        log.info("Reindexed {} documents into {}, alias {} switched", count[0], name, index.alias());
+    }
+
+    // Перечитывает из БД документы, измененные relay'ем за время обхода, и пишет их поверх снимка
+    private void catchUp(SearchIndex index, String name) {
+        Set<String> touched = redisTemplate.opsForSet().members(TOUCHED_KEY_PREFIX + name);
+        if (touched == null || touched.isEmpty()) {
+            return;
+        }
+
+        List<UUID> ids = touched.stream().map(UUID::fromString).toList();
+        SearchIndexClient.Bulk bulk = client.bulk();
+        for (int from = 0; from < ids.size(); from += fetchSize) {
+            write(index, ids.subList(from, Math.min(from + fetchSize, ids.size())), bulk, List.of(name));
+        }
+        bulk.flush();
+        log.info("Re-applied {} documents changed during reindex of {}", ids.size(), index.alias());
+    }
+
+    private List<String> targets(SearchIndex index) {
+        List<String> targets = new ArrayList<>(2);
+        targets.add(index.alias());
+        try {
+            String pending = redisTemplate.opsForValue().get(REINDEX_KEY_PREFIX + index.alias());
+            if (pending != null) {
+                targets.add(pending);
+            }
+        } catch (DataAccessException e) {
+            // Без Redis не знаем о переиндексации; изменения все равно попадут в текущий индекс
+            log.warn("Failed to check reindex state of {}: {}", index.alias(), e.getMessage());
+        }
+        return targets;
+    }
+
+    private static String documentSql(SearchIndex index) {
+        return index == SearchIndex.VIDEOS ? VIDEO_DOCUMENT_SQL : CHANNEL_DOCUMENT_SQL;
+    }
+
+    private static Map<String, Object> toDocument(SearchIndex index, ResultSet rs) throws SQLException {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", rs.getObject("id", UUID.class).toString());
+
+        if (index == SearchIndex.CHANNELS) {
+            document.put("channelName", rs.getString("channel_name"));
+            document.put("description", rs.getString("description"));
+            document.put("subscriberCount", rs.getLong("subscriber_count"));
+            document.put("videoCount", rs.getLong("video_count"));
+            return document;
+        }
+
+        Array tags = rs.getArray("tags");
+        Timestamp publishedAt = rs.getTimestamp("published_at");
+        document.put("title", rs.getString("title"));
+        document.put("description", rs.getString("description"));
+        document.put("tags", tags != null ? Arrays.asList((String[]) tags.getArray()) : List.of());
+        document.put("channelId", rs.getObject("channel_id", UUID.class).toString());
+        document.put("channelName", rs.getString("channel_name"));
+        document.put("durationSeconds", rs.getObject("duration_seconds"));
+        document.put("viewCount", rs.getLong("view_count"));
+        document.put("likeCount", rs.getLong("like_count"));
+        document.put("publishedAt", publishedAt != null ? publishedAt.toLocalDateTime().toString() : null);
+        return document;
+    }
+}
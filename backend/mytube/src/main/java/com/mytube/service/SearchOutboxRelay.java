@@ -0,0 +1,104 @@
+package com.mytube.service;
+
+import com.mytube.exception.SearchUnavailableException;
+import com.mytube.service.SearchIndexClient.SearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Переносит search_outbox в Elasticsearch. Порция строк блокируется (SKIP LOCKED - узлы не мешают
+ * друг другу), документы перечитываются из БД и уходят в _bulk, и только после успешной отправки
+ * строки удаляются в той же транзакции. Падение на любом шаге откатывает удаление, и порция
+ * будет отправлена снова: доставка at-least-once, а повторная запись документа идемпотентна.
+ */
+@Service
+@Slf4j
+public class SearchOutboxRelay {
+
+    private static final String CLAIM_SQL = """
+            SELECT id, entity_type, entity_id
+            FROM search_outbox
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private record OutboxEntry(long id, String entityType, UUID entityId) {
+    }
+
+    private final SearchIndexer searchIndexer;
+    private final SearchIndexClient client;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public SearchOutboxRelay(SearchIndexer searchIndexer,
+                             SearchIndexClient client,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${search.outbox.batch-size:500}") int batchSize) {
+        this.searchIndexer = searchIndexer;
+        this.client = client;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${search.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        try {
+            searchIndexer.ensureReady();
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed >= batchSize);
+        } catch (SearchUnavailableException | DataAccessException e) {
+            log.warn("Search outbox relay failed, retrying next time: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OutboxEntry> entries = jdbcTemplate.query(CLAIM_SQL,
+                    (rs, rowNum) -> new OutboxEntry(rs.getLong("id"), rs.getString("entity_type"),
+                            rs.getObject("entity_id", UUID.class)),
+                    batchSize);
+            if (entries.isEmpty()) {
+                return 0;
+            }
+
+            // Несколько изменений одной сущности в порции - один документ
+            Set<UUID> videos = new HashSet<>();
+            Set<UUID> channels = new HashSet<>();
+            for (OutboxEntry entry : entries) {
+                ("CHANNEL".equals(entry.entityType()) ? channels : videos).add(entry.entityId());
+            }
+
+            SearchIndexClient.Bulk bulk = client.bulk();
+            searchIndexer.apply(SearchIndex.VIDEOS, videos, bulk);
+            searchIndexer.apply(SearchIndex.CHANNELS, channels, bulk);
+            bulk.flush();
+
+            Object[] ids = entries.stream().map(OutboxEntry::id).toArray();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement("DELETE FROM search_outbox WHERE id = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("int8", ids));
+                return ps;
+            });
+            return entries.size();
+        });
+        return relayed != null ? relayed : 0;
+    }
+}
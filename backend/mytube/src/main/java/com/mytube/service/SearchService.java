@@ -1,4 +1,214 @@
 package com.mytube.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mytube.dto.CursorPage;
+import com.mytube.dto.SearchDTO;
+import com.mytube.dto.VideoDTO;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.VideoCardView;
+import com.mytube.service.SearchIndexClient.SearchIndex;
+import com.mytube.util.SearchCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Поиск видео. Релевантность текста (заголовок важнее тегов, теги важнее описания) умножается
+ * на популярность (log просмотров) и свежесть (гауссово затухание по дате публикации).
+ * Страницы листаются через search_after по (score, id), глубина страницы не влияет на стоимость.
+ * Небольшая доля популярных запросов дает большую часть трафика, поэтому результаты несколько
+ * секунд живут в кэше; одновременные одинаковые запросы ждут один поход в Elasticsearch.
+ */
+@Service
+@Slf4j
 public class SearchService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final int MAX_QUERY_LENGTH = 200;
+
+    private final SearchIndexClient client;
+    private final SuggestionService suggestionService;
+    private final VideoRepository videoRepository;
+    private final ObjectMapper objectMapper;
+    private final String recencyScale;
+    private final LoadingCache<SearchKey, CursorPage<VideoDTO.VideoCard>> results;
+
+    private record SearchKey(SearchDTO.VideoQuery query, String cursor, int limit) {
+    }
+
+    private record Hit(UUID id, double score) {
+    }
+
+    public SearchService(SearchIndexClient client,
+                         SuggestionService suggestionService,
+                         VideoRepository videoRepository,
+                         ObjectMapper objectMapper,
+                         @Value("${search.recency-scale:30d}") String recencyScale,
+                         @Value("${search.cache-size:10000}") long cacheSize,
+                         @Value("${search.cache-ttl-seconds:30}") long cacheTtlSeconds) {
+        this.client = client;
+        this.suggestionService = suggestionService;
+        this.videoRepository = videoRepository;
+        this.objectMapper = objectMapper;
+        this.recencyScale = recencyScale;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build(this::load);
+    }
+
+    /**
+     * @param userId   null для анонима; вместе с clientIp отличает искавших для подсказок
+     * @param clientIp адрес клиента
+     */
+    public CursorPage<VideoDTO.VideoCard> searchVideos(SearchDTO.VideoQuery query, String cursor, int limit,
+                                                       UUID userId, String clientIp) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        if (cursor != null && cursor.isBlank()) {
+            cursor = null;
+        }
+        if (cursor != null) {
+            // Битый курсор отклоняем до кэша
+            SearchCursor.decode(cursor);
+        }
+
+        SearchDTO.VideoQuery normalized = SearchDTO.VideoQuery.builder()
+                .text(normalize(query.getText()))
+                .channelId(query.getChannelId())
+                .minDurationSeconds(query.getMinDurationSeconds())
+                .maxDurationSeconds(query.getMaxDurationSeconds())
+                .uploadDate(query.getUploadDate())
+                .build();
+        if (normalized.getText().isEmpty()) {
+            throw new IllegalArgumentException("Query is empty");
+        }
+        if (cursor == null) {
+            suggestionService.recordQuery(normalized.getText(), userId != null ? "user:" + userId : "ip:" + clientIp);
+        }
+        return results.get(new SearchKey(normalized, cursor, pageSize));
+    }
+
+    /**
+     * Нормализация запроса для ключа кэша: "Cats  Funny" и "cats funny" - один и тот же запрос.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е')
+                .replaceAll("\\s+", " ")
+                .trim();
+        return normalized.length() > MAX_QUERY_LENGTH ? normalized.substring(0, MAX_QUERY_LENGTH) : normalized;
+    }
+
+    private CursorPage<VideoDTO.VideoCard> load(SearchKey key) {
+        SearchCursor after = key.cursor() != null ? SearchCursor.decode(key.cursor()) : null;
+        JsonNode response = client.search(SearchIndex.VIDEOS, buildQuery(key.query(), after, key.limit() + 1));
+
+        List<Hit> hits = new ArrayList<>();
+        for (JsonNode hit : response.path("hits").path("hits")) {
+            JsonNode sort = hit.path("sort");
+            hits.add(new Hit(UUID.fromString(hit.path("_id").asText()), sort.path(0).asDouble()));
+        }
+
+        boolean hasMore = hits.size() > key.limit();
+        List<Hit> page = hasMore ? hits.subList(0, key.limit()) : hits;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Hit last = page.get(page.size() - 1);
+            nextCursor = new SearchCursor(last.score(), last.id()).encode();
+        }
+
+        return CursorPage.<VideoDTO.VideoCard>builder()
+                .items(hydrate(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private ObjectNode buildQuery(SearchDTO.VideoQuery query, SearchCursor after, int size) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("size", size);
+        root.put("_source", false);
+        root.put("track_total_hits", false);
+
+        ObjectNode bool = objectMapper.createObjectNode();
+        ObjectNode multiMatch = bool.putObject("must").putObject("multi_match");
+        multiMatch.put("query", query.getText());
+        multiMatch.put("type", "best_fields");
+        multiMatch.put("fuzziness", "AUTO");
+        multiMatch.putArray("fields").add("title^3").add("tags^2").add("channelName^1.5").add("description");
+
+        ArrayNode filters = bool.putArray("filter");
+        if (query.getChannelId() != null) {
+            filters.addObject().putObject("term").put("channelId", query.getChannelId().toString());
+        }
+        if (query.getMinDurationSeconds() != null || query.getMaxDurationSeconds() != null) {
+            ObjectNode range = filters.addObject().putObject("range").putObject("durationSeconds");
+            if (query.getMinDurationSeconds() != null) {
+                range.put("gte", query.getMinDurationSeconds());
+            }
+            if (query.getMaxDurationSeconds() != null) {
+                range.put("lte", query.getMaxDurationSeconds());
+            }
+        }
+        if (query.getUploadDate() != null) {
+            filters.addObject().putObject("range").putObject("publishedAt").put("gte", query.getUploadDate().from());
+        }
+
+        ObjectNode functionScore = root.putObject("query").putObject("function_score");
+        functionScore.set("query", objectMapper.createObjectNode().set("bool", bool));
+        ArrayNode functions = functionScore.putArray("functions");
+        // log2p: видео без просмотров не обнуляет релевантность
+        functions.addObject().putObject("field_value_factor")
+                .put("field", "viewCount").put("modifier", "log2p").put("missing", 0);
+        // Начало затухания округлено до часа, чтобы score не менялся между страницами одной выдачи
+        functions.addObject().putObject("gauss").putObject("publishedAt")
+                .put("origin", "now/h").put("scale", recencyScale).put("decay", 0.5);
+        functionScore.put("score_mode", "multiply");
+        functionScore.put("boost_mode", "multiply");
+
+        ArrayNode sort = root.putArray("sort");
+        sort.addObject().put("_score", "desc");
+        sort.addObject().put("id", "desc");
+        if (after != null) {
+            root.putArray("search_after").add(after.score()).add(after.id().toString());
+        }
+        return root;
+    }
+
+    // Карточки из БД в порядке выдачи; видео, скрытые после индексации, отфильтровываются
+    private List<VideoDTO.VideoCard> hydrate(List<Hit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, VideoCardView> byId = new HashMap<>();
+        for (VideoCardView view : videoRepository.findVideoCardsByIds(hits.stream().map(Hit::id).toList())) {
+            byId.put(view.getId(), view);
+        }
+        return hits.stream()
+                .map(hit -> byId.get(hit.id()))
+                .filter(Objects::nonNull)
+                .map(FeedService::toCard)
+                .toList();
+    }
 }
@@ -0,0 +1,182 @@
+package com.mytube.service;
+
+import com.mytube.event.SubscriptionChangedEvent;
+import com.mytube.repository.SubscriptionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Подписки на каналы. Счетчик подписчиков меняется только когда строка реально вставлена или удалена,
+ * и уходит в CounterBuffer. Для кнопок "подписаться" на сетках каналов у каждого пользователя есть
+ * Redis set его каналов: проверка N каналов - один SMISMEMBER вместо N exists-запросов. Каждая смена
+ * подписок увеличивает версию пользователя, и множество, прочитанное из БД до смены, в Redis не пишется.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionService {
+
+    private static final String SUBSCRIPTIONS_KEY_PREFIX = "subscriptions:user:";
+    private static final String VERSION_KEY_PREFIX = "subscriptions:user:version:";
+    private static final Duration VERSION_TTL = Duration.ofDays(1);
+
+    // Маркер загруженного множества, чтобы не путать "нет подписок" с "не загружено"
+    private static final String LOADED_MARKER = "-";
+
+    // Версия растет всегда; меняем только уже загруженное множество, незагруженное прочитается из БД целиком
+    private static final RedisScript<Long> UPDATE_IF_PRESENT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], tonumber(ARGV[3]))
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            if ARGV[2] == '1' then
+                return redis.call('SADD', KEYS[1], ARGV[1])
+            end
+            return redis.call('SREM', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    // Запись только при неизменной версии: иначе чтение из БД могло разминуться с подпиской или отпиской.
+    // SADD частями - unpack не принимает произвольно длинный список
+    private static final RedisScript<Long> STORE = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('DEL', KEYS[2])
+            for i = 3, #ARGV, 1000 do
+                redis.call('SADD', KEYS[2], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+            end
+            redis.call('EXPIRE', KEYS[2], tonumber(ARGV[2]))
+            return 1
+            """, Long.class);
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final CounterBuffer counterBuffer;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${subscriptions.cache-ttl-hours:24}")
+    private int cacheTtlHours;
+
+    @Transactional
+    public boolean subscribe(UUID userId, UUID channelId) {
+        boolean changed = subscriptionRepository.insertIfAbsent(userId, channelId) > 0;
+        if (changed) {
+            counterBuffer.addAfterCommit(CounterBuffer.Counter.CHANNEL_SUBSCRIBERS, channelId, 1);
+            eventPublisher.publishEvent(new SubscriptionChangedEvent(userId, channelId, true));
+        }
+        return changed;
+    }
+
+    @Transactional
+    public boolean unsubscribe(UUID userId, UUID channelId) {
+        boolean changed = subscriptionRepository.deleteIfPresent(userId, channelId) > 0;
+        if (changed) {
+            counterBuffer.addAfterCommit(CounterBuffer.Counter.CHANNEL_SUBSCRIBERS, channelId, -1);
+            eventPublisher.publishEvent(new SubscriptionChangedEvent(userId, channelId, false));
+        }
+        return changed;
+    }
+
+    /**
+     * Какие из переданных каналов есть в подписках пользователя.
+     */
+    public Map<UUID, Boolean> getSubscriptionStatuses(UUID userId, Collection<UUID> channelIds) {
+        if (channelIds.isEmpty()) {
+            return Map.of();
+        }
+
+        String key = SUBSCRIPTIONS_KEY_PREFIX + userId;
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                Object[] members = channelIds.stream().map(UUID::toString).toArray();
+                Map<Object, Boolean> membership = redisTemplate.opsForSet().isMember(key, members);
+                if (membership != null) {
+                    Map<UUID, Boolean> result = new HashMap<>();
+                    for (UUID channelId : channelIds) {
+                        result.put(channelId, Boolean.TRUE.equals(membership.get(channelId.toString())));
+                    }
+                    return result;
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Subscription cache unavailable for user {}: {}", userId, e.getMessage());
+        }
+
+        Set<UUID> subscribed = load(userId);
+        Map<UUID, Boolean> result = new HashMap<>();
+        for (UUID channelId : channelIds) {
+            result.put(channelId, subscribed.contains(channelId));
+        }
+        return result;
+    }
+
+    @TransactionalEventListener
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        try {
+            redisTemplate.execute(UPDATE_IF_PRESENT,
+                    List.of(SUBSCRIPTIONS_KEY_PREFIX + event.subscriberId(), VERSION_KEY_PREFIX + event.subscriberId()),
+                    event.channelId().toString(), event.subscribed() ? "1" : "0",
+                    String.valueOf(VERSION_TTL.toSeconds()));
+        } catch (DataAccessException e) {
+            // Иначе кэш останется неверным до истечения TTL
+            log.warn("Failed to update subscription cache of user {}, dropping it: {}",
+                    event.subscriberId(), e.getMessage());
+            evict(event.subscriberId());
+        }
+    }
+
+    private Set<UUID> load(UUID userId) {
+        String versionKey = VERSION_KEY_PREFIX + userId;
+        String version;
+        try {
+            // Версия читается до БД: смена подписок после этого момента не даст записать устаревшее множество
+            version = redisTemplate.opsForValue().get(versionKey);
+        } catch (DataAccessException e) {
+            log.warn("Subscription cache unavailable for user {}: {}", userId, e.getMessage());
+            return new HashSet<>(subscriptionRepository.findChannelIdsBySubscriberId(userId));
+        }
+
+        List<UUID> channelIds = subscriptionRepository.findChannelIdsBySubscriberId(userId);
+
+        List<String> args = new ArrayList<>(channelIds.size() + 3);
+        args.add(version != null ? version : "0");
+        args.add(String.valueOf(Duration.ofHours(cacheTtlHours).toSeconds()));
+        args.add(LOADED_MARKER);
+        channelIds.forEach(id -> args.add(id.toString()));
+
+        try {
+            redisTemplate.execute(STORE, List.of(versionKey, SUBSCRIPTIONS_KEY_PREFIX + userId), args.toArray());
+        } catch (DataAccessException e) {
+            log.warn("Failed to cache subscriptions of user {}: {}", userId, e.getMessage());
+        }
+        return new HashSet<>(channelIds);
+    }
+
+    private void evict(UUID userId) {
+        try {
+            redisTemplate.delete(SUBSCRIPTIONS_KEY_PREFIX + userId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to evict subscription cache of user {}: {}", userId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.mytube.service;
+
+import com.mytube.util.SuggestionTrie;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Подсказки поисковой строки. Каждый узел держит в памяти SuggestionTrie, собранный из заголовков
+ * популярных видео, тегов и частых поисковых запросов; запрос подсказок не ходит ни в БД, ни в
+ * Elasticsearch. Индекс пересобирается в фоне и подменяется одной записью volatile-ссылки,
+ * читатели ничего не блокируют. Частоты запросов копятся локально и сбрасываются в общий для
+ * узлов Redis sorted set. Запрос попадает туда, только когда его искали несколько разных
+ * пользователей или IP (HyperLogLog на запрос), чтобы один клиент не мог навязать подсказку.
+ */
+@Service
+@Slf4j
+public class SuggestionService {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final String QUERIES_KEY = "search:queries";
+    private static final String SEARCHERS_KEY_PREFIX = "search:queries:searchers:";
+
+    private static final String POPULAR_TITLES_SQL = """
+            SELECT v.title, v.view_count
+            FROM videos v
+            WHERE v.visibility = 'PUBLIC' AND v.status = 'READY'
+            ORDER BY v.view_count DESC
+            LIMIT ?
+            """;
+
+    // Только теги публичных готовых видео: теги скрытых видео видны лишь их владельцам
+    private static final String TAG_USAGE_SQL = """
+            SELECT t.name, count(*) AS usage
+            FROM tags t
+                     JOIN video_tags vt ON vt.tag_id = t.id
+                     JOIN videos v ON v.id = vt.video_id
+            WHERE v.visibility = 'PUBLIC' AND v.status = 'READY'
+            GROUP BY t.name
+            ORDER BY usage DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final int titleLimit;
+    private final int tagLimit;
+    private final int queryLimit;
+    private final int maxDepth;
+    private final int minSearchers;
+    private final int maxPendingQueries;
+    private final int maxQueriesPerSearcher;
+    private final Duration searcherWindow;
+
+    private final Map<String, PendingQuery> pendingQueries = new ConcurrentHashMap<>();
+    // Сколько новых запросов каждый источник завел с последнего сброса
+    private final Map<String, AtomicInteger> searcherQueries = new ConcurrentHashMap<>();
+    private final ExecutorService rebuildExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile SuggestionTrie trie = SuggestionTrie.EMPTY;
+
+    private static final class PendingQuery {
+        private final LongAdder count = new LongAdder();
+        private final Set<String> searchers = ConcurrentHashMap.newKeySet();
+    }
+
+    public SuggestionService(JdbcTemplate jdbcTemplate,
+                             StringRedisTemplate redisTemplate,
+                             @Value("${search.suggest.title-limit:50000}") int titleLimit,
+                             @Value("${search.suggest.tag-limit:20000}") int tagLimit,
+                             @Value("${search.suggest.query-limit:50000}") int queryLimit,
+                             @Value("${search.suggest.max-depth:20}") int maxDepth,
+                             @Value("${search.suggest.min-searchers:5}") int minSearchers,
+                             @Value("${search.suggest.max-pending-queries:10000}") int maxPendingQueries,
+                             @Value("${search.suggest.max-queries-per-searcher:20}") int maxQueriesPerSearcher,
+                             @Value("${search.suggest.searcher-window-hours:6}") long searcherWindowHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.titleLimit = titleLimit;
+        this.tagLimit = tagLimit;
+        this.queryLimit = queryLimit;
+        this.maxDepth = maxDepth;
+        this.minSearchers = minSearchers;
+        this.maxPendingQueries = maxPendingQueries;
+        this.maxQueriesPerSearcher = maxQueriesPerSearcher;
+        this.searcherWindow = Duration.ofHours(searcherWindowHours);
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        String normalized = SearchService.normalize(prefix);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return trie.suggest(normalized, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS));
+    }
+
+    /**
+     * Учет запроса для подсказок; вызывается на каждый поиск, поэтому только локальные счетчики.
+     *
+     * @param searcher id пользователя или IP анонима
+     */
+    public void recordQuery(String normalizedQuery, String searcher) {
+        if (normalizedQuery.isEmpty()) {
+            return;
+        }
+        PendingQuery pending = pendingQueries.get(normalizedQuery);
+        if (pending == null) {
+            // Новые запросы сверх лимита до сброса теряются; один источник не занимает весь лимит
+            if (pendingQueries.size() >= maxPendingQueries || !takeSearcherSlot(searcher)) {
+                return;
+            }
+            pending = pendingQueries.computeIfAbsent(normalizedQuery, q -> new PendingQuery());
+        }
+        pending.count.increment();
+        // Больше minSearchers источников с одного узла порогу не нужно
+        if (pending.searchers.size() < minSearchers) {
+            pending.searchers.add(searcher);
+        }
+    }
+
+    private boolean takeSearcherSlot(String searcher) {
+        AtomicInteger used = searcherQueries.get(searcher);
+        if (used == null) {
+            if (searcherQueries.size() >= maxPendingQueries) {
+                return false;
+            }
+            used = searcherQueries.computeIfAbsent(searcher, s -> new AtomicInteger());
+        }
+        return used.incrementAndGet() <= maxQueriesPerSearcher;
+    }
+
+    @Scheduled(fixedDelayString = "${search.suggest.query-flush-interval-ms:10000}")
+    public void flushQueries() {
+        searcherQueries.clear();
+        Map<String, PendingQuery> drained = new HashMap<>();
+        for (String query : pendingQueries.keySet()) {
+            PendingQuery pending = pendingQueries.remove(query);
+            // Пустой набор источников - запрос снят с карты до первой записи в него
+            if (pending != null && !pending.searchers.isEmpty()) {
+                drained.put(query, pending);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        List<String> queries = new ArrayList<>(drained.keySet());
+        try {
+            // Разные источники запроса за окно: HyperLogLog с несколькими элементами занимает десятки байт
+            List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String query : queries) {
+                    String key = SEARCHERS_KEY_PREFIX + query;
+                    redis.pfAdd(key, drained.get(query).searchers.toArray(String[]::new));
+                    redis.expire(key, searcherWindow.toSeconds());
+                    redis.pfCount(key);
+                }
+                return null;
+            });
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (int i = 0; i < queries.size(); i++) {
+                    // Ответы идут тройками pfAdd, expire, pfCount
+                    if (((Number) replies.get(i * 3 + 2)).longValue() >= minSearchers) {
+                        String query = queries.get(i);
+                        redis.zIncrBy(QUERIES_KEY, drained.get(query).count.sum(), query);
+                    }
+                }
+                // Хвост из редких запросов не растет бесконечно
+                redis.zRemRangeByRank(QUERIES_KEY, 0, -(queryLimit * 2L + 1));
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Failed to flush {} search queries: {}", queries.size(), e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        scheduleRebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${search.suggest.rebuild-interval-ms:600000}",
+            initialDelayString = "${search.suggest.rebuild-interval-ms:600000}")
+    public void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Failed to rebuild search suggestions, keeping the previous index: {}", e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void rebuild() {
+        Map<String, Double> weights = new HashMap<>();
+
+        jdbcTemplate.query(POPULAR_TITLES_SQL, rs -> {
+            addWeight(weights, rs.getString(1), Math.log1p(rs.getLong(2)));
+        }, titleLimit);
+        jdbcTemplate.query(TAG_USAGE_SQL, rs -> {
+            addWeight(weights, rs.getString(1), Math.log1p(rs.getLong(2)));
+        }, tagLimit);
+
+        try {
+            Set<ZSetOperations.TypedTuple<String>> queries = redisTemplate.opsForZSet()
+                    .reverseRangeWithScores(QUERIES_KEY, 0, queryLimit - 1L);
+            if (queries != null) {
+                for (ZSetOperations.TypedTuple<String> query : queries) {
+                    addWeight(weights, query.getValue(), Math.log1p(query.getScore() != null ? query.getScore() : 0));
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Search query stats unavailable, building suggestions without them: {}", e.getMessage());
+        }
+
+        trie = SuggestionTrie.build(weights, MAX_SUGGESTIONS, maxDepth);
+        log.info("Search suggestions rebuilt: {} terms", trie.size());
+    }
+
+    private static void addWeight(Map<String, Double> weights, String text, double weight) {
+        String normalized = SearchService.normalize(text);
+        if (!normalized.isEmpty()) {
+            weights.merge(normalized, weight, Double::sum);
+        }
+    }
+}
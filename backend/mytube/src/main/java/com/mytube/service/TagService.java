@@ -0,0 +1,125 @@
+package com.mytube.service;
+
+import com.mytube.entity.Tag;
+import com.mytube.event.VideoTagsChangedEvent;
+import com.mytube.repository.TagRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TagService {
+
+    public static final int MAX_TAGS_PER_VIDEO = 15;
+    public static final int MAX_TAG_LENGTH = 50;
+
+    /*
+     * Замена набора тегов видео одним запросом: недостающие теги создаются (DO UPDATE нужен, чтобы
+     * RETURNING вернул id и уже существующих строк), лишние связи удаляются, новые добавляются.
+     * Менять может только владелец канала; для чужого видео owned пуст и запрос ничего не делает.
+     */
+    private static final String REPLACE_TAGS_SQL = """
+            WITH owned AS (
+                SELECT v.id
+                FROM videos v
+                         JOIN channels ch ON ch.id = v.channel_id
+                WHERE v.id = ? AND ch.user_id = ?
+            ), upserted AS (
+                INSERT INTO tags (name)
+                SELECT DISTINCT n.name
+                FROM unnest(?::text[]) AS n(name)
+                WHERE EXISTS (SELECT 1 FROM owned)
+                ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name
+                RETURNING id
+            ), removed AS (
+                DELETE FROM video_tags vt
+                USING owned
+                WHERE vt.video_id = owned.id AND vt.tag_id NOT IN (SELECT id FROM upserted)
+                RETURNING 1
+            ), added AS (
+                INSERT INTO video_tags (video_id, tag_id)
+                SELECT owned.id, u.id FROM owned, upserted u
+                ON CONFLICT DO NOTHING
+                RETURNING 1
+            )
+            SELECT (SELECT count(*) FROM owned), (SELECT count(*) FROM removed) + (SELECT count(*) FROM added)
+            """;
+
+    private final TagRepository tagRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final VideoService videoService;
+
+    @Transactional(readOnly = true)
+    public List<String> getVideoTags(UUID videoId, UUID viewerId) {
+        // Теги скрытого видео видны только владельцу, как и само видео
+        videoService.requireViewable(videoId, viewerId);
+        return tagRepository.findByVideoId(videoId).stream().map(Tag::getName).toList();
+    }
+
+    @Transactional
+    public List<String> setVideoTags(UUID userId, UUID videoId, Collection<String> names) {
+        List<String> normalized = normalize(names);
+
+        long[] result = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(REPLACE_TAGS_SQL);
+            ps.setObject(1, videoId);
+            ps.setObject(2, userId);
+            ps.setArray(3, connection.createArrayOf("text", normalized.toArray()));
+            return ps;
+        }, rs -> {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        });
+        if (result == null || result[0] == 0) {
+            throw new RuntimeException("Video not found");
+        }
+
+        if (result[1] > 0) {
+            eventPublisher.publishEvent(new VideoTagsChangedEvent(videoId));
+        }
+        return normalized;
+    }
+
+    /**
+     * Имя тега в том виде, в каком оно хранится: "#Lo  Fi" и "lo fi" - один тег. Пустая строка - тега нет.
+     */
+    public static String normalizeTag(String name) {
+        if (name == null) {
+            return "";
+        }
+        String tag = name.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return tag.startsWith("#") ? tag.substring(1) : tag;
+    }
+
+    private static List<String> normalize(Collection<String> names) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String name : names) {
+            String tag = normalizeTag(name);
+            if (tag.isEmpty()) {
+                continue;
+            }
+            if (tag.length() > MAX_TAG_LENGTH) {
+                throw new IllegalArgumentException("Tag is too long: " + name);
+            }
+            result.add(tag);
+        }
+        if (result.size() > MAX_TAGS_PER_VIDEO) {
+            throw new IllegalArgumentException("Too many tags, max " + MAX_TAGS_PER_VIDEO);
+        }
+        return List.copyOf(result);
+    }
+}
@@ -0,0 +1,318 @@
+package com.mytube.service;
+
+import com.mytube.dto.VideoDTO;
+import com.mytube.event.CommentCreatedEvent;
+import com.mytube.event.VideoStatsChangedEvent;
+import com.mytube.event.VideoUnpublishedEvent;
+import com.mytube.event.ViewCountsFlushedEvent;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.VideoCardView;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Трендовые видео: экспоненциально затухающая сумма взвешенных событий (просмотр, лайк, комментарий).
+ * Вместо того чтобы уменьшать все счета со временем, вклад события растет: событие в момент t весит
+ * w * e^(λ(t - t0)), а в Redis хранится логарифм суммы. Порядок по такому счету совпадает с порядком
+ * по затухающему, обновление - O(1) на видео (log-sum-exp), и пересчитывать ничего не нужно.
+ * Полный счет видео лежит в хэше, а глобальный и потеговые списки - ZSET'ы, обрезанные до top-K:
+ * видео, выпавшее из списка, возвращается в него с полным счетом при следующем событии.
+ */
+@Service
+@Slf4j
+public class TrendingService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private static final String SCORES_KEY = "trending:score";
+    private static final String GLOBAL_KEY = "trending:global";
+    private static final String TAG_KEY_PREFIX = "trending:tag:";
+    private static final String LIKED_KEY_PREFIX = "trending:liked:";
+    // Начало отсчета общее для всех узлов; через год при полураспаде в сутки логарифм вырастет на ~250
+    private static final Instant EPOCH = Instant.parse("2025-01-01T00:00:00Z");
+
+    /*
+     * KEYS[1] - хэш полных счетов, KEYS[2] - глобальный список, дальше потеговые списки подряд.
+     * ARGV[1] - K, дальше по каждому видео: id, логарифм вклада, число его тегов.
+     */
+    private static final RedisScript<Long> APPLY = new DefaultRedisScript<>("""
+            local k = tonumber(ARGV[1])
+            local key = 3
+            local arg = 2
+            local updated = 0
+            while arg <= #ARGV do
+                local id = ARGV[arg]
+                local s = tonumber(ARGV[arg + 1])
+                local tags = tonumber(ARGV[arg + 2])
+                arg = arg + 3
+
+                local old = tonumber(redis.call('HGET', KEYS[1], id))
+                if old then
+                    local m = math.max(old, s)
+                    s = m + math.log(math.exp(old - m) + math.exp(s - m))
+                end
+                redis.call('HSET', KEYS[1], id, tostring(s))
+
+                redis.call('ZADD', KEYS[2], s, id)
+                redis.call('ZREMRANGEBYRANK', KEYS[2], 0, -k - 1)
+                for i = 1, tags do
+                    redis.call('ZADD', KEYS[key], s, id)
+                    redis.call('ZREMRANGEBYRANK', KEYS[key], 0, -k - 1)
+                    key = key + 1
+                end
+                updated = updated + 1
+            end
+            return updated
+            """, Long.class);
+
+    // Теги только у публичных готовых видео: остальные в тренды не попадают
+    private static final String TAGS_SQL = """
+            SELECT v.id, t.name
+            FROM videos v
+                     LEFT JOIN video_tags vt ON vt.video_id = v.id
+                     LEFT JOIN tags t ON t.id = vt.tag_id
+            WHERE v.id = ANY(?) AND v.visibility = 'PUBLIC' AND v.status = 'READY'
+            """;
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final VideoRepository videoRepository;
+    private final double decayPerSecond;
+    private final double viewWeight;
+    private final double likeWeight;
+    private final double commentWeight;
+    private final int topK;
+    private final double minScoreLog;
+    // За четыре периода полураспада прежний лайк затухает до 1/16 - повторный можно учесть заново
+    private final Duration likeDedupTtl;
+
+    // Логарифм суммы вкладов за интервал flush'а
+    private final Map<UUID, Double> pending = new ConcurrentHashMap<>();
+
+    public TrendingService(StringRedisTemplate redisTemplate,
+                           JdbcTemplate jdbcTemplate,
+                           VideoRepository videoRepository,
+                           @Value("${trending.half-life-hours:24}") double halfLifeHours,
+                           @Value("${trending.weight.view:1}") double viewWeight,
+                           @Value("${trending.weight.like:4}") double likeWeight,
+                           @Value("${trending.weight.comment:6}") double commentWeight,
+                           @Value("${trending.top-k:500}") int topK,
+                           @Value("${trending.min-score:0.5}") double minScore) {
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.videoRepository = videoRepository;
+        this.decayPerSecond = Math.log(2) / Duration.ofMinutes(Math.round(halfLifeHours * 60)).toSeconds();
+        this.likeDedupTtl = Duration.ofMinutes(Math.round(halfLifeHours * 60 * 4));
+        this.viewWeight = viewWeight;
+        this.likeWeight = likeWeight;
+        this.commentWeight = commentWeight;
+        this.topK = topK;
+        this.minScoreLog = Math.log(minScore);
+    }
+
+    public List<VideoDTO.VideoCard> getTrending(String tag, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        // Списки по тегам лежат под нормализованным именем, как теги хранятся в БД
+        String normalizedTag = TagService.normalizeTag(tag);
+        String key = normalizedTag.isEmpty() ? GLOBAL_KEY : TAG_KEY_PREFIX + normalizedTag;
+
+        // Отсечка по текущему времени убирает видео, чей счет давно затух, даже если их еще не вычистили
+        Set<String> members = redisTemplate.opsForZSet()
+                .reverseRangeByScore(key, logNow() + minScoreLog, Double.POSITIVE_INFINITY, 0, pageSize);
+        if (members == null || members.isEmpty()) {
+            return List.of();
+        }
+
+        List<UUID> ids = members.stream().map(UUID::fromString).toList();
+        Map<UUID, VideoCardView> byId = new HashMap<>();
+        for (VideoCardView view : videoRepository.findVideoCardsByIds(ids)) {
+            byId.put(view.getId(), view);
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).map(FeedService::toCard).toList();
+    }
+
+    // Просмотры пишутся пакетным flush'ем вне транзакции
+    @EventListener
+    public void onViewCountsFlushed(ViewCountsFlushedEvent event) {
+        event.viewDeltas().forEach((videoId, views) -> record(videoId, views * viewWeight));
+    }
+
+    @TransactionalEventListener
+    public void onVideoStatsChanged(VideoStatsChangedEvent event) {
+        // Снятый лайк не вычитается, зато повторный лайк того же пользователя не считается:
+        // иначе переключение лайка накручивало бы счет без ограничений
+        if (event.liked() && firstLike(event.videoId(), event.userId())) {
+            record(event.videoId(), likeWeight);
+        }
+    }
+
+    private boolean firstLike(UUID videoId, UUID userId) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(LIKED_KEY_PREFIX + videoId + ":" + userId, "1", likeDedupTtl));
+        } catch (DataAccessException e) {
+            // Без Redis не отличить повторный лайк от первого; лучше недосчитать
+            log.warn("Failed to check like of video {} by {}: {}", videoId, userId, e.getMessage());
+            return false;
+        }
+    }
+
+    @TransactionalEventListener
+    public void onCommentCreated(CommentCreatedEvent event) {
+        record(event.videoId(), commentWeight);
+    }
+
+    @TransactionalEventListener
+    public void onVideoUnpublished(VideoUnpublishedEvent event) {
+        pending.remove(event.videoId());
+        String id = event.videoId().toString();
+        try {
+            List<String> keys = new ArrayList<>();
+            keys.add(GLOBAL_KEY);
+            jdbcTemplate.query("""
+                    SELECT t.name FROM video_tags vt JOIN tags t ON t.id = vt.tag_id WHERE vt.video_id = ?
+                    """, rs -> {
+                keys.add(TAG_KEY_PREFIX + rs.getString(1));
+            }, event.videoId());
+            for (String key : keys) {
+                redisTemplate.opsForZSet().remove(key, id);
+            }
+            redisTemplate.opsForHash().delete(SCORES_KEY, id);
+        } catch (DataAccessException e) {
+            log.warn("Failed to drop video {} from trending: {}", event.videoId(), e.getMessage());
+        }
+    }
+
+    private void record(UUID videoId, double weight) {
+        if (weight <= 0) {
+            return;
+        }
+        // Время события учитывается сразу, а не в момент flush'а; сам e^(λt) не вычисляется - переполнился бы
+        pending.merge(videoId, Math.log(weight) + logNow(), TrendingService::logSumExp);
+    }
+
+    private static double logSumExp(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log(Math.exp(a - max) + Math.exp(b - max));
+    }
+
+    @Scheduled(fixedDelayString = "${trending.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Double> batch = new HashMap<>();
+        for (UUID videoId : List.copyOf(pending.keySet())) {
+            Double value = pending.remove(videoId);
+            if (value != null) {
+                batch.put(videoId, value);
+            }
+        }
+
+        try {
+            Map<UUID, List<String>> tags = loadTags(batch.keySet());
+            List<String> keys = new ArrayList<>();
+            keys.add(SCORES_KEY);
+            keys.add(GLOBAL_KEY);
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(topK));
+            tags.forEach((videoId, names) -> {
+                args.add(videoId.toString());
+                args.add(String.valueOf(batch.get(videoId)));
+                args.add(String.valueOf(names.size()));
+                names.forEach(name -> keys.add(TAG_KEY_PREFIX + name));
+            });
+            if (args.size() > 1) {
+                redisTemplate.execute(APPLY, keys, args.toArray());
+            }
+        } catch (DataAccessException e) {
+            // Вклады не теряются: возвращаются в буфер до следующей попытки
+            log.warn("Failed to flush trending scores: {}", e.getMessage());
+            batch.forEach((videoId, value) -> pending.merge(videoId, value, TrendingService::logSumExp));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Чистка затухших счетов. Без нее хэш рос бы на каждое когда-либо просмотренное видео.
+     */
+    @Scheduled(fixedDelayString = "${trending.prune-interval-ms:3600000}")
+    public void prune() {
+        double threshold = logNow() + minScoreLog;
+        try {
+            List<Object> stale = new ArrayList<>();
+            try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash()
+                    .scan(SCORES_KEY, ScanOptions.scanOptions().count(1000).build())) {
+                while (cursor.hasNext()) {
+                    Map.Entry<Object, Object> entry = cursor.next();
+                    if (Double.parseDouble((String) entry.getValue()) < threshold) {
+                        stale.add(entry.getKey());
+                    }
+                }
+            }
+            if (!stale.isEmpty()) {
+                redisTemplate.opsForHash().delete(SCORES_KEY, stale.toArray());
+            }
+
+            redisTemplate.opsForZSet().removeRangeByScore(GLOBAL_KEY, Double.NEGATIVE_INFINITY, threshold);
+            try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                    .match(TAG_KEY_PREFIX + "*").count(1000).build())) {
+                while (keys.hasNext()) {
+                    redisTemplate.opsForZSet().removeRangeByScore(keys.next(), Double.NEGATIVE_INFINITY, threshold);
+                }
+            }
+            log.debug("Pruned {} decayed trending scores", stale.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to prune trending scores: {}", e.getMessage());
+        }
+    }
+
+    private Map<UUID, List<String>> loadTags(Set<UUID> videoIds) {
+        Map<UUID, List<String>> result = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(TAGS_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", videoIds.toArray()));
+            return ps;
+        }, rs -> {
+            List<String> names = result.computeIfAbsent(rs.getObject(1, UUID.class), id -> new ArrayList<>());
+            String name = rs.getString(2);
+            if (name != null) {
+                names.add(name);
+            }
+        });
+        return result;
+    }
+
+    private double logNow() {
+        return decayPerSecond * Duration.between(EPOCH, Instant.now()).toSeconds();
+    }
+}
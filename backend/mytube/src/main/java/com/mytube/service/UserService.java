@@ -5,11 +5,13 @@ import com.mytube.entity.Channel;
 import com.mytube.entity.OAuthProvider;
 import com.mytube.entity.User;
 import com.mytube.entity.enums.UserRole;
+import com.mytube.event.ChannelChangedEvent;
 import com.mytube.repository.ChannelRepository;
 import com.mytube.repository.OAuthProviderRepository;
 import com.mytube.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -32,6 +34,7 @@ public class UserService implements UserDetailsService {
     private final ChannelRepository channelRepository;
     private final OAuthProviderRepository oAuthProviderRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -206,6 +209,12 @@ public class UserService implements UserDetailsService {
             user.setBannerUrl(request.getBannerUrl());
         }
 
+        // Аватар и баннер показываются в шапке канала
+        if (request.getAvatarUrl() != null || request.getBannerUrl() != null) {
+            channelRepository.findByUserId(userId)
+                    .ifPresent(channel -> eventPublisher.publishEvent(new ChannelChangedEvent(channel.getId())));
+        }
+
         return userRepository.save(user);
     }
 
@@ -1,4 +1,127 @@
 package com.mytube.service;
 
+import com.mytube.dto.CursorPage;
+import com.mytube.dto.VideoDTO;
+import com.mytube.entity.enums.VideoStatus;
+import com.mytube.entity.enums.VideoVisibility;
+import com.mytube.event.VideoPublishedEvent;
+import com.mytube.event.VideoUnpublishedEvent;
+import com.mytube.exception.VideoNotFoundException;
+import com.mytube.repository.VideoRepository;
+import com.mytube.repository.projection.VideoCardView;
+import com.mytube.repository.projection.VideoStateChange;
+import com.mytube.util.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
 public class VideoService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private final VideoRepository videoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Главная страница: публичные видео, новые сверху. Курсор - (published_at, id) последней карточки,
+     * на страницу читается не больше limit + 1 строк независимо от размера каталога.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<VideoDTO.VideoCard> getPublicVideos(String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        List<VideoCardView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = videoRepository.findPublicVideoCards(pageSize + 1);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = videoRepository.findPublicVideoCardsBefore(after.timestamp(), after.id(), pageSize + 1);
+        }
+        return toPage(rows, pageSize);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<VideoDTO.VideoCard> getChannelVideos(UUID channelId, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        List<VideoCardView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = videoRepository.findChannelVideoCards(channelId, pageSize + 1);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = videoRepository.findChannelVideoCardsBefore(channelId, after.timestamp(), after.id(), pageSize + 1);
+        }
+        return toPage(rows, pageSize);
+    }
+
+    // Общая проверка доступа для всего, что читается по id видео: комментарии, теги, heartbeat'ы плеера
+    @Transactional(readOnly = true)
+    public void requireViewable(UUID videoId, UUID viewerId) {
+        if (!videoRepository.isViewable(videoId, viewerId)) {
+            throw new VideoNotFoundException(videoId);
+        }
+    }
+
+    // Обработка видео завершена
+    @Transactional
+    public void markReady(UUID videoId) {
+        VideoStateChange change = videoRepository.markReady(videoId);
+        if (change == null) {
+            throw new RuntimeException("Video not found");
+        }
+
+        publishStateChange(change);
+        log.info("Video {} is ready", videoId);
+    }
+
+    // Смена видимости владельцем канала
+    @Transactional
+    public void updateVisibility(UUID userId, UUID videoId, VideoVisibility visibility) {
+        VideoStateChange change = videoRepository.updateVisibility(userId, videoId, visibility.name());
+        if (change == null) {
+            throw new RuntimeException("Video not found");
+        }
+
+        publishStateChange(change);
+    }
+
+    private void publishStateChange(VideoStateChange change) {
+        boolean wasPublic = isPublic(change.getPreviousStatus(), change.getPreviousVisibility());
+        boolean nowPublic = isPublic(change.getStatus(), change.getVisibility());
+        if (!wasPublic && nowPublic) {
+            eventPublisher.publishEvent(new VideoPublishedEvent(change.getVideoId(), change.getChannelId(),
+                    change.getPublishedAt()));
+        } else if (wasPublic && !nowPublic) {
+            eventPublisher.publishEvent(new VideoUnpublishedEvent(change.getVideoId(), change.getChannelId()));
+        }
+    }
+
+    private CursorPage<VideoDTO.VideoCard> toPage(List<VideoCardView> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<VideoCardView> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            VideoCardView last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getPublishedAt(), last.getId()).encode();
+        }
+
+        return CursorPage.<VideoDTO.VideoCard>builder()
+                .items(page.stream().map(FeedService::toCard).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private boolean isPublic(String status, String visibility) {
+        return VideoStatus.READY.name().equals(status) && VideoVisibility.PUBLIC.name().equals(visibility);
+    }
 }
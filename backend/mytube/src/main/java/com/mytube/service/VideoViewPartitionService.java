@@ -0,0 +1,134 @@
+package com.mytube.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание помесячных секций video_views: заранее создает будущие секции
+ * и отсоединяет секции старше срока хранения, когда их уже свернули в daily_video_stats.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VideoViewPartitionService {
+
+    private static final String PARENT_TABLE = "video_views";
+    private static final String ARCHIVE_SCHEMA = "archive";
+    private static final Pattern PARTITION_NAME = Pattern.compile("^video_views_p(\\d{6})$");
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    public enum RetentionMode {
+        DROP, ARCHIVE
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AnalyticsService analyticsService;
+
+    @Value("${analytics.video-views.premake-months:3}")
+    private int premakeMonths;
+
+    @Value("${analytics.video-views.retention-months:13}")
+    private int retentionMonths;
+
+    @Value("${analytics.video-views.retention-mode:ARCHIVE}")
+    private RetentionMode retentionMode;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        // Без секции на текущий месяц вставки в video_views падают, поэтому проверяем сразу при старте
+        createUpcomingPartitions();
+    }
+
+    @Scheduled(cron = "${analytics.video-views.partition-cron:0 15 3 * * *}")
+    public void maintainPartitions() {
+        createUpcomingPartitions();
+        expireOldPartitions();
+    }
+
+    public void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    partitionName(month), PARENT_TABLE, month.atDay(1), month.plusMonths(1).atDay(1)));
+        }
+    }
+
+    public void expireOldPartitions() {
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        LocalDateTime rolledUpUntil = analyticsService
+                .getRolledUpUntil(AnalyticsService.DAILY_VIDEO_STATS_ROLLUP)
+                .orElse(null);
+
+        for (String partition : listPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+
+            YearMonth month = YearMonth.parse(matcher.group(1), SUFFIX_FORMAT);
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+
+            // Секцию можно убирать только после того, как агрегация прошла ее целиком
+            LocalDateTime partitionEnd = month.plusMonths(1).atDay(1).atStartOfDay();
+            if (rolledUpUntil == null || rolledUpUntil.isBefore(partitionEnd)) {
+                log.warn("Partition {} is past retention but not rolled up yet (rolled up until {})",
+                        partition, rolledUpUntil);
+                continue;
+            }
+
+            try {
+                detachPartition(partition);
+            } catch (DataAccessException e) {
+                log.error("Failed to expire partition {}: {}", partition, e.getMessage());
+            }
+        }
+    }
+
+    private void detachPartition(String partition) {
+        // CONCURRENTLY не берет ACCESS EXCLUSIVE на всю video_views и не блокирует вставки
+        jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s CONCURRENTLY",
+                PARENT_TABLE, partition));
+
+        if (retentionMode == RetentionMode.ARCHIVE) {
+            jdbcTemplate.execute(String.format("ALTER TABLE %s SET SCHEMA %s", partition, ARCHIVE_SCHEMA));
+            log.info("Partition {} detached and moved to schema {}", partition, ARCHIVE_SCHEMA);
+        } else {
+            jdbcTemplate.execute(String.format("DROP TABLE %s", partition));
+            log.info("Partition {} detached and dropped", partition);
+        }
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT child.relname
+                FROM pg_inherits i
+                         JOIN pg_class parent ON parent.oid = i.inhparent
+                         JOIN pg_class child ON child.oid = i.inhrelid
+                         JOIN pg_namespace ns ON ns.oid = parent.relnamespace
+                WHERE parent.relname = ? AND ns.nspname = current_schema()
+                ORDER BY child.relname
+                """, String.class, PARENT_TABLE);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(SUFFIX_FORMAT);
+    }
+}
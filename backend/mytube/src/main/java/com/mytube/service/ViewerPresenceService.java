@@ -0,0 +1,121 @@
+package com.mytube.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счетчик "смотрят сейчас". Присутствие зрителя хранится в Redis sorted set на видео
+ * со score = время последнего heartbeat. Узел копит отметки в памяти и отправляет их
+ * одним пайплайном за интервал, а чтения обслуживает из короткоживущего локального кэша.
+ */
+@Service
+@Slf4j
+public class ViewerPresenceService {
+
+    private static final String PRESENCE_KEY_PREFIX = "presence:video:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final long presenceWindowMillis;
+    private final LoadingCache<UUID, Long> watchingCache;
+
+    // Накопленные с прошлого flush отметки: видео -> сессии, которые прислали heartbeat или ушли
+    private volatile Map<UUID, PendingPresence> pending = new ConcurrentHashMap<>();
+
+    private record PendingPresence(Set<String> active, Set<String> left) {
+        private PendingPresence() {
+            this(ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    public ViewerPresenceService(StringRedisTemplate redisTemplate,
+                                 @Value("${presence.window-seconds:45}") int windowSeconds,
+                                 @Value("${presence.cache-ttl-ms:2000}") long cacheTtlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.presenceWindowMillis = Duration.ofSeconds(windowSeconds).toMillis();
+        this.watchingCache = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMillis))
+                .build(this::countFromRedis);
+    }
+
+    public void touch(UUID videoId, String sessionId) {
+        PendingPresence presence = pending.computeIfAbsent(videoId, id -> new PendingPresence());
+        presence.left().remove(sessionId);
+        presence.active().add(sessionId);
+    }
+
+    public void leave(UUID videoId, String sessionId) {
+        PendingPresence presence = pending.computeIfAbsent(videoId, id -> new PendingPresence());
+        presence.active().remove(sessionId);
+        presence.left().add(sessionId);
+    }
+
+    public long getWatchingNow(UUID videoId) {
+        // Caffeine загружает значение один раз на ключ, параллельные запросы ждут тот же ZCOUNT
+        return watchingCache.get(videoId);
+    }
+
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:5000}")
+    public void flush() {
+        Map<UUID, PendingPresence> batch = pending;
+        if (batch.isEmpty()) {
+            return;
+        }
+        pending = new ConcurrentHashMap<>();
+
+        long now = System.currentTimeMillis();
+        long expireSeconds = presenceWindowMillis * 2 / 1000;
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                batch.forEach((videoId, presence) -> {
+                    String key = PRESENCE_KEY_PREFIX + videoId;
+
+                    if (!presence.active().isEmpty()) {
+                        Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+                        for (String sessionId : presence.active()) {
+                            tuples.add(new DefaultStringTuple(sessionId.getBytes(StandardCharsets.UTF_8),
+                                    sessionId, (double) now));
+                        }
+                        redis.zAdd(key, tuples);
+                    }
+                    if (!presence.left().isEmpty()) {
+                        redis.zRem(key, presence.left().toArray(new String[0]));
+                    }
+
+                    // Скользящее окно: выкидываем тех, кто давно не присылал heartbeat
+                    redis.zRemRangeByScore(key, Double.NEGATIVE_INFINITY, now - presenceWindowMillis);
+                    redis.expire(key, expireSeconds);
+                });
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Failed to flush presence for {} videos: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private long countFromRedis(UUID videoId) {
+        long from = System.currentTimeMillis() - presenceWindowMillis;
+        Long count = redisTemplate.opsForZSet()
+                .count(PRESENCE_KEY_PREFIX + videoId, from, Double.POSITIVE_INFINITY);
+        return count != null ? count : 0L;
+    }
+}
@@ -0,0 +1,379 @@
+package com.mytube.service;
+
+import com.mytube.event.ViewCountsFlushedEvent;
+import com.mytube.exception.RateLimitExceededException;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Принимает heartbeat'ы плеера и копит прогресс просмотра в памяти по паре (сессия, видео).
+ * В БД уходят только периодические и финальные значения watch time одним пакетом на интервал.
+ * Id сессии выбирает клиент, поэтому новая сессия заводится только для доступного видео и в пределах
+ * лимита активных сессий на IP: иначе перебором id можно накручивать просмотры и раздувать память.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WatchTimeService {
+
+    private static final String RESUME_KEY_PREFIX = "resume:";
+
+    private static final String INSERT_VIEWS_SQL = """
+            INSERT INTO video_views (video_id, user_id, ip_address, user_agent, watch_time_seconds, viewed_at, session_id)
+            SELECT t.video_id, t.user_id, t.ip_address::inet, t.user_agent, t.watch_time, t.viewed_at, t.session_id
+            FROM unnest(?::uuid[], ?::uuid[], ?::text[], ?::text[], ?::int[], ?::timestamp[], ?::varchar[])
+                     AS t(video_id, user_id, ip_address, user_agent, watch_time, viewed_at, session_id)
+                     JOIN videos v ON v.id = t.video_id
+            RETURNING id, session_id, video_id
+            """;
+
+    // viewed_at в условии нужен, чтобы апдейт попадал в одну секцию video_views
+    private static final String UPDATE_WATCH_TIME_SQL = """
+            UPDATE video_views vv
+            SET watch_time_seconds = t.watch_time
+            FROM unnest(?::bigint[], ?::timestamp[], ?::int[]) AS t(id, viewed_at, watch_time)
+            WHERE vv.id = t.id AND vv.viewed_at = t.viewed_at
+            """;
+
+    private static final String INCREMENT_VIEW_COUNT_SQL = """
+            UPDATE videos v
+            SET view_count = v.view_count + t.delta
+            FROM unnest(?::uuid[], ?::bigint[]) AS t(id, delta)
+            WHERE v.id = t.id
+            RETURNING v.id, v.view_count
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final VideoService videoService;
+
+    private final Map<SessionKey, WatchSession> sessions = new ConcurrentHashMap<>();
+    // Активные сессии по IP; меняется только вместе с заведением и удалением сессии
+    private final Map<String, Integer> sessionsPerIp = new ConcurrentHashMap<>();
+
+    @Value("${watch-time.max-heartbeat-gap-seconds:30}")
+    private int maxHeartbeatGapSeconds;
+
+    @Value("${watch-time.session-idle-timeout-seconds:120}")
+    private int sessionIdleTimeoutSeconds;
+
+    @Value("${watch-time.resume-ttl-days:90}")
+    private int resumeTtlDays;
+
+    @Value("${watch-time.max-sessions-per-ip:20}")
+    private int maxSessionsPerIp;
+
+    @Value("${watch-time.max-sessions:200000}")
+    private int maxSessions;
+
+    private record SessionKey(String sessionId, UUID videoId) {
+    }
+
+    private static final class WatchSession {
+        private final UUID userId;
+        private final String ipAddress;
+        private final String userAgent;
+        private final LocalDateTime viewedAt;
+
+        private Long viewId;
+        private int watchedSeconds;
+        private int positionSeconds;
+        private long lastHeartbeatMillis;
+        private boolean dirty = true;
+        private boolean ended;
+
+        private WatchSession(UUID userId, String ipAddress, String userAgent, long nowMillis) {
+            this.userId = userId;
+            this.ipAddress = ipAddress;
+            this.userAgent = userAgent;
+            // Postgres хранит микросекунды, обрезаем сразу, чтобы viewed_at совпадал при апдейтах
+            this.viewedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            this.lastHeartbeatMillis = nowMillis;
+        }
+    }
+
+    private record Snapshot(SessionKey key, WatchSession session, Long viewId, int watchedSeconds,
+                            int positionSeconds, boolean ended) {
+    }
+
+    /**
+     * @throws com.mytube.exception.VideoNotFoundException видео нет или оно недоступно зрителю
+     * @throws RateLimitExceededException                  превышен лимит активных сессий
+     */
+    public void recordHeartbeat(String sessionId, UUID videoId, UUID userId, int positionSeconds, boolean ended,
+                                String ipAddress, String userAgent) {
+        long now = System.currentTimeMillis();
+        SessionKey sessionKey = new SessionKey(sessionId, videoId);
+
+        // Доступ проверяется один раз на сессию, последующие heartbeat'ы идут только через память
+        if (!sessions.containsKey(sessionKey)) {
+            videoService.requireViewable(videoId, userId);
+        }
+
+        sessions.compute(sessionKey, (key, session) -> {
+            if (session == null) {
+                if (sessions.size() >= maxSessions || !acquireIpSlot(ipAddress)) {
+                    throw new RateLimitExceededException(sessionIdleTimeoutSeconds * 1000L);
+                }
+                session = new WatchSession(userId, ipAddress, userAgent, now);
+            }
+
+            synchronized (session) {
+                if (positionSeconds != session.positionSeconds) {
+                    // Засчитываем реальное время между heartbeat'ами, но не больше допустимого разрыва
+                    long elapsed = Math.min((now - session.lastHeartbeatMillis) / 1000, maxHeartbeatGapSeconds);
+                    session.watchedSeconds += (int) elapsed;
+                }
+
+                session.positionSeconds = positionSeconds;
+                session.lastHeartbeatMillis = now;
+                session.ended |= ended;
+                session.dirty = true;
+            }
+            return session;
+        });
+    }
+
+    public Optional<Integer> getResumePosition(UUID userId, UUID videoId) {
+        Object position = redisTemplate.opsForHash().get(RESUME_KEY_PREFIX + userId, videoId.toString());
+        return Optional.ofNullable(position).map(value -> Integer.valueOf(value.toString()));
+    }
+
+    @Scheduled(fixedDelayString = "${watch-time.flush-interval-ms:15000}")
+    public void flush() {
+        long idleThreshold = System.currentTimeMillis() - sessionIdleTimeoutSeconds * 1000L;
+        List<Snapshot> snapshots = new ArrayList<>();
+
+        sessions.forEach((key, session) -> {
+            synchronized (session) {
+                if (session.dirty) {
+                    snapshots.add(new Snapshot(key, session, session.viewId, session.watchedSeconds,
+                            session.positionSeconds, session.ended));
+                    session.dirty = false;
+                }
+            }
+        });
+
+        if (!snapshots.isEmpty()) {
+            writeSnapshots(snapshots);
+        }
+
+        // Завершенные и давно молчащие сессии уже записаны, убираем их из памяти
+        sessions.forEach((key, session) -> {
+            boolean evictable;
+            synchronized (session) {
+                evictable = !session.dirty && session.viewId != null
+                        && (session.ended || session.lastHeartbeatMillis < idleThreshold);
+            }
+            if (evictable) {
+                dropSession(key, session);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void writeSnapshots(List<Snapshot> snapshots) {
+        List<Snapshot> inserts = new ArrayList<>();
+        List<Snapshot> updates = new ArrayList<>();
+        for (Snapshot snapshot : snapshots) {
+            (snapshot.viewId() == null ? inserts : updates).add(snapshot);
+        }
+
+        try {
+            if (!inserts.isEmpty()) {
+                insertViews(inserts);
+            }
+            if (!updates.isEmpty()) {
+                updateWatchTime(updates);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to flush {} watch sessions: {}", snapshots.size(), e.getMessage());
+            snapshots.forEach(snapshot -> markDirty(snapshot.session()));
+            return;
+        }
+
+        try {
+            saveResumePositions(snapshots);
+        } catch (DataAccessException e) {
+            log.warn("Failed to save resume positions: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Строки вставляются только для существующих видео: видео могли удалить после начала сессии.
+     * Просмотры и счетчики пишутся в одной транзакции, viewId раздаются сессиям только после коммита.
+     */
+    private void insertViews(List<Snapshot> inserts) {
+        int size = inserts.size();
+        Object[] videoIds = new Object[size];
+        Object[] userIds = new Object[size];
+        Object[] ipAddresses = new Object[size];
+        Object[] userAgents = new Object[size];
+        Object[] watchTimes = new Object[size];
+        Object[] viewedAts = new Object[size];
+        Object[] sessionIds = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            Snapshot snapshot = inserts.get(i);
+            WatchSession session = snapshot.session();
+            videoIds[i] = snapshot.key().videoId();
+            userIds[i] = session.userId;
+            ipAddresses[i] = session.ipAddress;
+            userAgents[i] = session.userAgent;
+            watchTimes[i] = snapshot.watchedSeconds();
+            viewedAts[i] = Timestamp.valueOf(session.viewedAt);
+            sessionIds[i] = snapshot.key().sessionId();
+        }
+
+        Map<SessionKey, Long> viewIds = new HashMap<>();
+        Map<UUID, Long> viewDeltas = new HashMap<>();
+        Map<UUID, Long> viewCounts = transactionTemplate.execute(status -> {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_VIEWS_SQL);
+                ps.setArray(1, connection.createArrayOf("uuid", videoIds));
+                ps.setArray(2, connection.createArrayOf("uuid", userIds));
+                ps.setArray(3, connection.createArrayOf("text", ipAddresses));
+                ps.setArray(4, connection.createArrayOf("text", userAgents));
+                ps.setArray(5, connection.createArrayOf("int4", watchTimes));
+                ps.setArray(6, connection.createArrayOf("timestamp", viewedAts));
+                ps.setArray(7, connection.createArrayOf("varchar", sessionIds));
+                return ps;
+            }, rs -> {
+                SessionKey key = new SessionKey(rs.getString("session_id"), rs.getObject("video_id", UUID.class));
+                viewIds.put(key, rs.getLong("id"));
+                viewDeltas.merge(key.videoId(), 1L, Long::sum);
+            });
+            return viewDeltas.isEmpty() ? Map.<UUID, Long>of() : incrementViewCounts(viewDeltas);
+        });
+
+        for (Snapshot snapshot : inserts) {
+            Long viewId = viewIds.get(snapshot.key());
+            if (viewId == null) {
+                // Видео удалили после начала сессии: строка не вставилась и не вставится, сессию забываем
+                dropSession(snapshot.key(), snapshot.session());
+                continue;
+            }
+            synchronized (snapshot.session()) {
+                snapshot.session().viewId = viewId;
+            }
+        }
+
+        if (!viewDeltas.isEmpty()) {
+            eventPublisher.publishEvent(new ViewCountsFlushedEvent(viewCounts, viewDeltas));
+        }
+    }
+
+    private void updateWatchTime(List<Snapshot> updates) {
+        int size = updates.size();
+        Object[] ids = new Object[size];
+        Object[] viewedAts = new Object[size];
+        Object[] watchTimes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            Snapshot snapshot = updates.get(i);
+            ids[i] = snapshot.viewId();
+            viewedAts[i] = Timestamp.valueOf(snapshot.session().viewedAt);
+            watchTimes[i] = snapshot.watchedSeconds();
+        }
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(UPDATE_WATCH_TIME_SQL);
+            ps.setArray(1, connection.createArrayOf("int8", ids));
+            ps.setArray(2, connection.createArrayOf("timestamp", viewedAts));
+            ps.setArray(3, connection.createArrayOf("int4", watchTimes));
+            return ps;
+        });
+    }
+
+    private Map<UUID, Long> incrementViewCounts(Map<UUID, Long> deltas) {
+        Object[] videoIds = deltas.keySet().toArray();
+        Object[] counts = deltas.values().toArray();
+
+        Map<UUID, Long> viewCounts = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INCREMENT_VIEW_COUNT_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", videoIds));
+            ps.setArray(2, connection.createArrayOf("int8", counts));
+            return ps;
+        }, rs -> {
+            viewCounts.put(rs.getObject("id", UUID.class), rs.getLong("view_count"));
+        });
+        return viewCounts;
+    }
+
+    private void saveResumePositions(List<Snapshot> snapshots) {
+        long ttlSeconds = Duration.ofDays(resumeTtlDays).toSeconds();
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Snapshot snapshot : snapshots) {
+                UUID userId = snapshot.session().userId;
+                if (userId == null) {
+                    continue;
+                }
+
+                String key = RESUME_KEY_PREFIX + userId;
+                String field = snapshot.key().videoId().toString();
+                // Досмотренное видео начинаем заново
+                if (snapshot.ended()) {
+                    redis.hDel(key, field);
+                } else {
+                    redis.hSet(key, field, String.valueOf(snapshot.positionSeconds()));
+                }
+                redis.expire(key, ttlSeconds);
+            }
+            return null;
+        });
+    }
+
+    private boolean acquireIpSlot(String ipAddress) {
+        boolean[] acquired = new boolean[1];
+        sessionsPerIp.compute(String.valueOf(ipAddress), (ip, count) -> {
+            int current = count != null ? count : 0;
+            acquired[0] = current < maxSessionsPerIp;
+            return acquired[0] ? current + 1 : count;
+        });
+        return acquired[0];
+    }
+
+    private void dropSession(SessionKey key, WatchSession session) {
+        if (sessions.remove(key, session)) {
+            sessionsPerIp.computeIfPresent(String.valueOf(session.ipAddress), (ip, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private void markDirty(WatchSession session) {
+        synchronized (session) {
+            session.dirty = true;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.mytube.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Модель "с этим смотрят" в бинарном файле, который узлы отображают в память только на чтение.
+ * <pre>
+ * int magic, int entryCount
+ * entryCount x (long msb, long lsb, int offset, int count)  - видео, отсортированные по UUID
+ * N x (long msb, long lsb, float score)                     - соседи, по убыванию score внутри видео
+ * </pre>
+ * Поиск - бинарный поиск по таблице видео и чтение подряд лежащих соседей, без десериализации файла.
+ */
+public final class CoViewModel {
+
+    public static final CoViewModel EMPTY = new CoViewModel(null, 0);
+
+    private static final int MAGIC = 0x434F5631;
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int ENTRY_BYTES = Long.BYTES * 2 + Integer.BYTES * 2;
+    private static final int NEIGHBOUR_BYTES = Long.BYTES * 2 + Float.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+
+    private CoViewModel(MappedByteBuffer buffer, int entryCount) {
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+    }
+
+    public static CoViewModel open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остается валидным и после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a co-view model: " + file);
+            }
+            return new CoViewModel(buffer, buffer.getInt(Integer.BYTES));
+        }
+    }
+
+    /**
+     * @param videos     id видео по порядковому номеру
+     * @param neighbours соседи по порядковому номеру: (float-биты score << 32 | номер соседа), по убыванию
+     */
+    public static void write(Path file, UUID[] videos, long[][] neighbours) throws IOException {
+        List<Integer> order = new ArrayList<>();
+        for (int ordinal = 0; ordinal < neighbours.length; ordinal++) {
+            if (neighbours[ordinal] != null && neighbours[ordinal].length > 0) {
+                order.add(ordinal);
+            }
+        }
+        order.sort(Comparator.comparing(ordinal -> videos[ordinal]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(order.size());
+
+            int offset = 0;
+            for (int ordinal : order) {
+                UUID id = videos[ordinal];
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+                out.writeInt(offset);
+                out.writeInt(neighbours[ordinal].length);
+                offset += neighbours[ordinal].length;
+            }
+
+            for (int ordinal : order) {
+                for (long packed : neighbours[ordinal]) {
+                    UUID neighbour = videos[(int) packed];
+                    out.writeLong(neighbour.getMostSignificantBits());
+                    out.writeLong(neighbour.getLeastSignificantBits());
+                    out.writeFloat(Float.intBitsToFloat((int) (packed >>> 32)));
+                }
+            }
+        }
+    }
+
+    public List<UUID> neighbours(UUID videoId, int limit) {
+        int entry = find(videoId);
+        if (entry < 0) {
+            return List.of();
+        }
+
+        int base = HEADER_BYTES + entry * ENTRY_BYTES;
+        int offset = buffer.getInt(base + Long.BYTES * 2);
+        int count = Math.min(buffer.getInt(base + Long.BYTES * 2 + Integer.BYTES), limit);
+
+        long neighboursStart = HEADER_BYTES + (long) entryCount * ENTRY_BYTES;
+        UUID[] result = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            int position = (int) (neighboursStart + (long) (offset + i) * NEIGHBOUR_BYTES);
+            result[i] = new UUID(buffer.getLong(position), buffer.getLong(position + Long.BYTES));
+        }
+        return Arrays.asList(result);
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    // Абсолютные get'ы не трогают позицию буфера, поэтому чтение из нескольких потоков безопасно
+    private int find(UUID videoId) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int base = HEADER_BYTES + mid * ENTRY_BYTES;
+            int cmp = new UUID(buffer.getLong(base), buffer.getLong(base + Long.BYTES)).compareTo(videoId);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
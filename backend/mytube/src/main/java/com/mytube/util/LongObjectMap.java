@@ -0,0 +1,102 @@
+package com.mytube.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Словарь long -> объект на открытой адресации: примитивные ключи вместо боксинга Long в HashMap.
+ * Писатель один (или сериализован снаружи), читатели не блокируются: значение пишется раньше ключа,
+ * а при росте таблица собирается заново и подменяется volatile-ссылкой. Ключи не удаляются, иначе
+ * порвались бы цепочки проб: вместо удаления значение заменяется на null. Ключ 0 зарезервирован
+ * под пустую ячейку.
+ */
+public final class LongObjectMap<V> {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private record Table<V>(AtomicLongArray keys, AtomicReferenceArray<V> values, int mask) {
+    }
+
+    private volatile Table<V> table;
+    private int size;
+
+    public LongObjectMap(int expectedSize) {
+        table = newTable(Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 16) - 1) << 1);
+    }
+
+    public V get(long key) {
+        Table<V> t = table;
+        int slot = slot(key, t.mask());
+        long current;
+        while ((current = t.keys().get(slot)) != 0) {
+            if (current == key) {
+                return t.values().get(slot);
+            }
+            slot = (slot + 1) & t.mask();
+        }
+        return null;
+    }
+
+    public void put(long key, V value) {
+        Table<V> t = table;
+        int slot = slot(key, t.mask());
+        long current;
+        while ((current = t.keys().get(slot)) != 0) {
+            if (current == key) {
+                t.values().set(slot, value);
+                return;
+            }
+            slot = (slot + 1) & t.mask();
+        }
+        t.values().set(slot, value);
+        t.keys().set(slot, key);
+        if (++size > t.keys().length() * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    // Обходит и ключи со значением null
+    public void forEach(EntryConsumer<V> consumer) {
+        Table<V> t = table;
+        for (int i = 0; i < t.keys().length(); i++) {
+            long key = t.keys().get(i);
+            if (key != 0) {
+                consumer.accept(key, t.values().get(i));
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // Финализатор murmur3, как в LongIntCounter
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void grow() {
+        Table<V> old = table;
+        Table<V> grown = newTable(old.keys().length() * 2);
+        for (int i = 0; i < old.keys().length(); i++) {
+            long key = old.keys().get(i);
+            if (key != 0) {
+                int slot = slot(key, grown.mask());
+                while (grown.keys().get(slot) != 0) {
+                    slot = (slot + 1) & grown.mask();
+                }
+                grown.values().set(slot, old.values().get(i));
+                grown.keys().set(slot, key);
+            }
+        }
+        table = grown;
+    }
+
+    private static <V> Table<V> newTable(int capacity) {
+        return new Table<>(new AtomicLongArray(capacity), new AtomicReferenceArray<>(capacity), capacity - 1);
+    }
+}
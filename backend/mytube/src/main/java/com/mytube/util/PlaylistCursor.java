@@ -0,0 +1,26 @@
+package com.mytube.util;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации элементов плейлиста по паре (позиция, id строки).
+ */
+public record PlaylistCursor(long position, long itemId) {
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2)
+                .putLong(position)
+                .putLong(itemId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static PlaylistCursor decode(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            return new PlaylistCursor(buffer.getLong(), buffer.getLong());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
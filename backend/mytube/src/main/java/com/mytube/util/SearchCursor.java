@@ -0,0 +1,28 @@
+package com.mytube.util;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Курсор поисковой выдачи: значения сортировки (score, id) последнего документа для search_after.
+ */
+public record SearchCursor(double score, UUID id) {
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES + Long.BYTES * 2)
+                .putDouble(score)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static SearchCursor decode(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            return new SearchCursor(buffer.getDouble(), new UUID(buffer.getLong(), buffer.getLong()));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mytube.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемый префиксный индекс подсказок. Узлы лежат в плоских массивах в порядке обхода в ширину,
+ * поэтому дети узла идут подряд и ищутся бинарным поиском по символу. В каждом узле заранее
+ * сохранены K лучших подсказок поддерева: ответ на запрос - спуск по префиксу и чтение готового списка,
+ * без обхода поддерева. Термины пронумерованы по убыванию веса, и список узла - просто первые K
+ * номеров, прошедших через него.
+ */
+public final class SuggestionTrie {
+
+    public static final SuggestionTrie EMPTY = build(Map.of(), 1, 1);
+
+    private final String[] terms;
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    // Подсказки узла i: tops[topOffset[i] .. topOffset[i + 1])
+    private final int[] topOffset;
+    private final int[] tops;
+
+    private SuggestionTrie(String[] terms, char[] labels, int[] firstChild, int[] childCount,
+                           int[] topOffset, int[] tops) {
+        this.terms = terms;
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.topOffset = topOffset;
+        this.tops = tops;
+    }
+
+    /**
+     * @param weights     нормализованные термины и их веса
+     * @param topK        сколько подсказок хранить в узле
+     * @param maxDepth    глубина дерева; префиксы длиннее дальше не уточняют подсказки
+     */
+    public static SuggestionTrie build(Map<String, Double> weights, int topK, int maxDepth) {
+        String[] terms = weights.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toArray(String[]::new);
+
+        BuildNode root = new BuildNode();
+        int nodeCount = 1;
+        for (int term = 0; term < terms.length; term++) {
+            String text = terms[term];
+            BuildNode node = root;
+            node.addTop(term, topK);
+            int depth = Math.min(text.length(), maxDepth);
+            for (int i = 0; i < depth; i++) {
+                BuildNode child = node.children.get(text.charAt(i));
+                if (child == null) {
+                    child = new BuildNode();
+                    node.children.put(text.charAt(i), child);
+                    nodeCount++;
+                }
+                child.addTop(term, topK);
+                node = child;
+            }
+        }
+
+        char[] labels = new char[nodeCount];
+        int[] firstChild = new int[nodeCount];
+        int[] childCount = new int[nodeCount];
+        int[] topOffset = new int[nodeCount + 1];
+        List<Integer> tops = new ArrayList<>();
+
+        ArrayDeque<BuildNode> queue = new ArrayDeque<>();
+        queue.add(root);
+        int next = 1;
+        for (int id = 0; id < nodeCount; id++) {
+            BuildNode node = queue.poll();
+            firstChild[id] = next;
+            childCount[id] = node.children.size();
+            for (Map.Entry<Character, BuildNode> child : node.children.entrySet()) {
+                labels[next++] = child.getKey();
+                queue.add(child.getValue());
+            }
+            topOffset[id] = tops.size();
+            tops.addAll(node.top);
+        }
+        topOffset[nodeCount] = tops.size();
+
+        return new SuggestionTrie(terms, labels, firstChild, childCount, topOffset,
+                tops.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        int node = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (childCount[node] == 0) {
+                // Глубже дерева нет: дофильтровываем подсказки последнего узла по полному префиксу
+                return filter(node, prefix, limit);
+            }
+            node = findChild(node, prefix.charAt(i));
+            if (node < 0) {
+                return List.of();
+            }
+        }
+
+        int count = Math.min(limit, topOffset[node + 1] - topOffset[node]);
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(terms[tops[topOffset[node] + i]]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    private List<String> filter(int node, String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        for (int i = topOffset[node]; i < topOffset[node + 1] && result.size() < limit; i++) {
+            String term = terms[tops[i]];
+            if (term.startsWith(prefix)) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    private int findChild(int node, char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (labels[mid] < c) {
+                low = mid + 1;
+            } else if (labels[mid] > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static final class BuildNode {
+        private final TreeMap<Character, BuildNode> children = new TreeMap<>(Comparator.naturalOrder());
+        private final List<Integer> top = new ArrayList<>(2);
+
+        // Термины приходят по убыванию веса, поэтому первые K и есть лучшие
+        private void addTop(int term, int topK) {
+            if (top.size() < topK) {
+                top.add(term);
+            }
+        }
+    }
+}
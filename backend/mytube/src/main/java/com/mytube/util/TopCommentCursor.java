@@ -0,0 +1,48 @@
+package com.mytube.util;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Курсор ленты "топ комментариев". Пока страницы берутся из лидерборда, rank - позиция следующего
+ * элемента в нем; после выхода за лидерборд rank = -1 и продолжаем keyset-запросом по ключу
+ * (закреплен, лайки, время, id) последнего отданного комментария.
+ */
+public record TopCommentCursor(int rank, boolean pinned, long likeCount, LocalDateTime createdAt, UUID id) {
+
+    public static final int KEYSET = -1;
+
+    public boolean inLeaderboard() {
+        return rank >= 0;
+    }
+
+    public String encode() {
+        long micros = createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + createdAt.getNano() / 1_000;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 1 + Long.BYTES * 4)
+                .putInt(rank)
+                .put((byte) (pinned ? 1 : 0))
+                .putLong(likeCount)
+                .putLong(micros)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static TopCommentCursor decode(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            int rank = buffer.getInt();
+            boolean pinned = buffer.get() != 0;
+            long likeCount = buffer.getLong();
+            long micros = buffer.getLong();
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            return new TopCommentCursor(rank, pinned, likeCount, createdAt, new UUID(buffer.getLong(), buffer.getLong()));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mytube.util;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Словарь UUID -> int на открытой адресации: UUID хранится двумя long, значение - примитивом, без
+ * объектов на каждую запись. Модель конкурентности та же, что у LongObjectMap: один писатель,
+ * читатели без блокировок; старшая половина ключа пишется последней и служит признаком занятой
+ * ячейки, поэтому UUID с нулевой старшей половиной не поддерживается (у v4 в ней всегда есть версия).
+ */
+public final class UuidIntMap {
+
+    public static final int ABSENT = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private record Table(AtomicLongArray most, AtomicLongArray least, AtomicIntegerArray values, int mask) {
+    }
+
+    private volatile Table table;
+    private volatile int size;
+
+    public UuidIntMap(int expectedSize) {
+        table = newTable(Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 16) - 1) << 1);
+    }
+
+    // ABSENT, если ключа нет
+    public int get(UUID key) {
+        long most = key.getMostSignificantBits();
+        long least = key.getLeastSignificantBits();
+        Table t = table;
+        int slot = slot(most, least, t.mask());
+        long current;
+        while ((current = t.most().get(slot)) != 0) {
+            if (current == most && t.least().get(slot) == least) {
+                return t.values().get(slot);
+            }
+            slot = (slot + 1) & t.mask();
+        }
+        return ABSENT;
+    }
+
+    public void put(UUID key, int value) {
+        long most = key.getMostSignificantBits();
+        long least = key.getLeastSignificantBits();
+        Table t = table;
+        int slot = slot(most, least, t.mask());
+        long current;
+        while ((current = t.most().get(slot)) != 0) {
+            if (current == most && t.least().get(slot) == least) {
+                t.values().set(slot, value);
+                return;
+            }
+            slot = (slot + 1) & t.mask();
+        }
+        t.values().set(slot, value);
+        t.least().set(slot, least);
+        t.most().set(slot, most);
+        size++;
+        if (size > t.most().length() * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int slot(long most, long least, int mask) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void grow() {
+        Table old = table;
+        Table grown = newTable(old.most().length() * 2);
+        for (int i = 0; i < old.most().length(); i++) {
+            long most = old.most().get(i);
+            if (most != 0) {
+                long least = old.least().get(i);
+                int slot = slot(most, least, grown.mask());
+                while (grown.most().get(slot) != 0) {
+                    slot = (slot + 1) & grown.mask();
+                }
+                grown.values().set(slot, old.values().get(i));
+                grown.least().set(slot, least);
+                grown.most().set(slot, most);
+            }
+        }
+        table = grown;
+    }
+
+    private static Table newTable(int capacity) {
+        return new Table(new AtomicLongArray(capacity), new AtomicLongArray(capacity),
+                new AtomicIntegerArray(capacity), capacity - 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mytube.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytube.exception.SearchUnavailableException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchIndexClientTest {
+
+    private final RestClient restClient = mock(RestClient.class);
+    private final SearchIndexClient client = new SearchIndexClient(restClient, new ObjectMapper(), 1000, 5_242_880, 0, 1);
+
+    @Test
+    void writesToAliasRequireAlias() throws IOException {
+        ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+        when(restClient.performRequest(requests.capture())).thenReturn(response("{\"errors\":false,\"items\":[]}"));
+
+        SearchIndexClient.Bulk bulk = client.bulk();
+        bulk.index("videos", "1", Map.of("title", "a"), false);
+        bulk.index("videos-20250101-000000-000", "1", Map.of("title", "a"), true);
+        bulk.flush();
+
+        String[] lines = EntityUtils.toString(requests.getValue().getEntity()).split("\n");
+        assertThat(lines[0]).contains("\"require_alias\":true");
+        // Переиндексация пишет в конкретный индекс, алиас на него еще не указывает
+        assertThat(lines[2]).doesNotContain("require_alias");
+    }
+
+    @Test
+    void missingAliasFailsTheBatch() throws IOException {
+        when(restClient.performRequest(any(Request.class))).thenReturn(response("""
+                {"errors":true,"items":[{"index":{"_id":"1","status":404,"error":{"type":"index_not_found_exception"}}}]}
+                """));
+
+        SearchIndexClient.Bulk bulk = client.bulk();
+        bulk.index("videos", "1", Map.of("title", "a"), false);
+
+        assertThatThrownBy(bulk::flush).isInstanceOf(SearchUnavailableException.class);
+    }
+
+    private static Response response(String json) {
+        Response response = mock(Response.class);
+        when(response.getEntity()).thenReturn(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return response;
+    }
+}
@@ -0,0 +1,124 @@
+package com.mytube.service;
+
+import com.mytube.exception.SearchUnavailableException;
+import com.mytube.service.SearchIndexClient.SearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchIndexerTest {
+
+    private static final String NEW_INDEX = "videos-20250101-000000-000";
+
+    private final SearchIndexClient client = mock(SearchIndexClient.class);
+    private final SearchIndexClient.Bulk bulk = mock(SearchIndexClient.Bulk.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+
+    @SuppressWarnings("unchecked")
+    private final SetOperations<String, String> setOperations = mock(SetOperations.class);
+
+    private SearchIndexer indexer;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(client.bulk()).thenReturn(bulk);
+        indexer = new SearchIndexer(client, jdbcTemplate, mock(PlatformTransactionManager.class), redisTemplate,
+                1000, 120);
+    }
+
+    @Test
+    void ensureReadyRetriesUntilAliasesExist() {
+        doThrow(new SearchUnavailableException(503, "Connection refused"))
+                .doNothing()
+                .when(client).ensureIndex(SearchIndex.VIDEOS);
+
+        // На старте Elasticsearch еще недоступен: ошибка только логируется
+        indexer.ensureIndices();
+        indexer.ensureReady();
+        indexer.ensureReady();
+
+        verify(client, times(2)).ensureIndex(SearchIndex.VIDEOS);
+        verify(client, times(1)).ensureIndex(SearchIndex.CHANNELS);
+    }
+
+    @Test
+    void applyDuringReindexRecordsTouchedIds() {
+        UUID videoId = UUID.randomUUID();
+        when(valueOperations.get("search:reindex:videos")).thenReturn(NEW_INDEX);
+
+        indexer.apply(SearchIndex.VIDEOS, List.of(videoId), bulk);
+
+        verify(setOperations).add("search:reindex:touched:" + NEW_INDEX, videoId.toString());
+        // Строк нет - видео скрыто: удаляется и из алиаса, и из нового индекса
+        verify(bulk).delete("videos", videoId.toString());
+        verify(bulk).delete(NEW_INDEX, videoId.toString());
+    }
+
+    @Test
+    void deleteDuringReindexStaysDeleted() throws SQLException {
+        UUID videoId = UUID.randomUUID();
+        when(client.createIndex(SearchIndex.VIDEOS)).thenReturn(NEW_INDEX);
+        when(valueOperations.setIfAbsent(eq("search:reindex:videos"), eq(NEW_INDEX), any(Duration.class)))
+                .thenReturn(true);
+        when(setOperations.members("search:reindex:touched:" + NEW_INDEX)).thenReturn(Set.of(videoId.toString()));
+
+        // Снимок курсора еще видит видео, а к догонке relay его уже удалил: второй запрос строк не возвращает
+        ResultSet row = videoRow(videoId);
+        AtomicInteger queries = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (queries.getAndIncrement() == 0) {
+                invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        indexer.startReindex(SearchIndex.VIDEOS);
+
+        verify(client, timeout(5000)).swapAlias(SearchIndex.VIDEOS, NEW_INDEX);
+        InOrder order = inOrder(bulk, client);
+        order.verify(bulk).index(eq(NEW_INDEX), eq(videoId.toString()), anyMap(), eq(true));
+        order.verify(bulk).delete(NEW_INDEX, videoId.toString());
+        order.verify(client).swapAlias(SearchIndex.VIDEOS, NEW_INDEX);
+    }
+
+    private static ResultSet videoRow(UUID videoId) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(videoId);
+        when(rs.getObject("channel_id", UUID.class)).thenReturn(UUID.randomUUID());
+        when(rs.getString("title")).thenReturn("Video");
+        return rs;
+    }
+}
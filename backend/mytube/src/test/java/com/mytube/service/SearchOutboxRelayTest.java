@@ -0,0 +1,28 @@
+package com.mytube.service;
+
+import com.mytube.exception.SearchUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class SearchOutboxRelayTest {
+
+    @Test
+    void relayWaitsForAliasesBeforeClaimingOutbox() {
+        SearchIndexer indexer = mock(SearchIndexer.class);
+        SearchIndexClient client = mock(SearchIndexClient.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doThrow(new SearchUnavailableException(503, "Connection refused")).when(indexer).ensureReady();
+
+        SearchOutboxRelay relay = new SearchOutboxRelay(indexer, client, jdbcTemplate,
+                mock(PlatformTransactionManager.class), 500);
+        relay.relay();
+
+        // Порция остается в outbox до появления алиасов, в Elasticsearch ничего не пишется
+        verifyNoInteractions(jdbcTemplate, client);
+    }
+}
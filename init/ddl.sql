@@ -111,7 +111,9 @@ CREATE TABLE video_tags
 CREATE TABLE playlists
 (
     id          UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
-    channel_id  UUID         NOT NULL REFERENCES channels (id) ON DELETE CASCADE,
+    user_id     UUID         NOT NULL REFERENCES users (id) ON DELETE CASCADE, -- владелец
+    channel_id  UUID REFERENCES channels (id) ON DELETE CASCADE,             -- NULL у системных плейлистов
+    system_type VARCHAR(20),                                                  -- WATCH_LATER; NULL у обычных
     title       VARCHAR(255) NOT NULL,
     description TEXT,
     visibility  video_visibility DEFAULT 'PUBLIC',
@@ -126,7 +128,7 @@ CREATE TABLE playlist_videos
     id          BIGSERIAL PRIMARY KEY,
     playlist_id UUID    NOT NULL REFERENCES playlists (id) ON DELETE CASCADE,
     video_id    UUID    NOT NULL REFERENCES videos (id) ON DELETE CASCADE,
-    position    INTEGER NOT NULL,
+    position    BIGINT  NOT NULL, -- разреженная: между соседями остается зазор под вставку
     added_at    TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     UNIQUE (playlist_id, video_id)
 );
@@ -138,10 +140,15 @@ CREATE TABLE comments
     video_id          UUID NOT NULL REFERENCES videos (id) ON DELETE CASCADE,
     user_id           UUID NOT NULL REFERENCES users (id) ON DELETE CASCADE,
     parent_comment_id UUID REFERENCES comments (id) ON DELETE CASCADE,
+    -- Корень ветки (у корневого комментария - он сам) и материализованный путь от корня:
+    -- сегмент на уровень = 11 hex-символов времени создания в мс + 32 hex-символа id + '/'
+    root_id           UUID NOT NULL,
+    path              TEXT COLLATE "C" NOT NULL,
+    depth             INTEGER NOT NULL DEFAULT 0,
     content           TEXT NOT NULL,
-    like_count        BIGINT           DEFAULT 0,
-    dislike_count     BIGINT           DEFAULT 0,
-    is_pinned         BOOLEAN          DEFAULT FALSE,
+    like_count        BIGINT  NOT NULL DEFAULT 0,
+    dislike_count     BIGINT  NOT NULL DEFAULT 0,
+    is_pinned         BOOLEAN NOT NULL DEFAULT FALSE,
     created_at        TIMESTAMP        DEFAULT CURRENT_TIMESTAMP,
     updated_at        TIMESTAMP        DEFAULT CURRENT_TIMESTAMP,
     CHECK (parent_comment_id IS NULL OR parent_comment_id != id)
@@ -202,17 +209,39 @@ CREATE TABLE channel_moderators
 );
 
 -- Аналитика: просмотры видео (и детальная статистика)
+-- Секционирована помесячно по viewed_at, новые секции заранее создает VideoViewPartitionService
 CREATE TABLE video_views
 (
-    id                 BIGSERIAL PRIMARY KEY,
-    video_id           UUID NOT NULL REFERENCES videos (id) ON DELETE CASCADE,
+    id                 BIGSERIAL,
+    video_id           UUID      NOT NULL REFERENCES videos (id) ON DELETE CASCADE,
     user_id            UUID REFERENCES users (id) ON DELETE SET NULL, -- NULL для анонимных
     ip_address         INET,
     user_agent         TEXT,
-    watch_time_seconds INTEGER   DEFAULT 0,
-    viewed_at          TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    session_id         VARCHAR(100)
-);
+    watch_time_seconds INTEGER            DEFAULT 0,
+    viewed_at          TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    session_id         VARCHAR(100),
+    PRIMARY KEY (id, viewed_at)
+) PARTITION BY RANGE (viewed_at);
+
+-- Стартовые секции: текущий месяц и два вперед
+DO
+$$
+    DECLARE
+        month_start DATE;
+    BEGIN
+        FOR i IN 0..2
+            LOOP
+                month_start := (date_trunc('month', CURRENT_DATE) + make_interval(months => i))::DATE;
+                EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF video_views FOR VALUES FROM (%L) TO (%L)',
+                               'video_views_p' || to_char(month_start, 'YYYYMM'),
+                               month_start,
+                               (month_start + INTERVAL '1 month')::DATE);
+            END LOOP;
+    END
+$$;
+
+-- Сюда переносятся отсоединенные секции video_views в режиме ARCHIVE
+CREATE SCHEMA IF NOT EXISTS archive;
 
 -- Аналитика: агрегированная статистика по дням
 CREATE TABLE daily_video_stats
@@ -243,6 +272,53 @@ CREATE TABLE daily_channel_stats
     UNIQUE (channel_id, date)
 );
 
+-- Водяные знаки фоновых агрегаций: до какого момента исходные данные уже свернуты
+CREATE TABLE rollup_watermarks
+(
+    name            VARCHAR(100) PRIMARY KEY,
+    processed_until TIMESTAMP NOT NULL,
+    updated_at      TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Уведомления пользователей
+CREATE TABLE notifications
+(
+    id         BIGSERIAL PRIMARY KEY,
+    user_id    UUID        NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    type       VARCHAR(30) NOT NULL, -- NEW_VIDEO
+    video_id   UUID REFERENCES videos (id) ON DELETE CASCADE,
+    is_read    BOOLEAN     NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- Повторная обработка батча после сбоя не создает дублей
+    UNIQUE (user_id, type, video_id)
+);
+
+-- Рассылки уведомлений о новых видео: last_subscriber_id - чекпоинт keyset-обхода подписчиков,
+-- lease_token/locked_until - аренда задания узлом, после истечения задание подхватит другой
+CREATE TABLE notification_fanout_jobs
+(
+    id                 BIGSERIAL PRIMARY KEY,
+    video_id           UUID        NOT NULL UNIQUE REFERENCES videos (id) ON DELETE CASCADE,
+    channel_id         UUID        NOT NULL REFERENCES channels (id) ON DELETE CASCADE,
+    status             VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, RUNNING, DONE
+    last_subscriber_id UUID,
+    delivered          BIGINT      NOT NULL DEFAULT 0,
+    lease_token        UUID,
+    locked_until       TIMESTAMP,
+    created_at         TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at         TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Outbox поискового индекса: строки пишут триггеры в той же транзакции, что и изменение,
+-- SearchOutboxRelay переносит их в Elasticsearch и удаляет после успешного _bulk
+CREATE TABLE search_outbox
+(
+    id          BIGSERIAL PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL, -- VIDEO, CHANNEL
+    entity_id   UUID        NOT NULL,
+    created_at  TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 -- История загрузок видео (для обработки)
 CREATE TABLE video_processing_logs
 (
@@ -262,21 +338,45 @@ CREATE INDEX idx_oauth_provider_user ON oauth_providers (provider, provider_user
 
 CREATE INDEX idx_channels_user_id ON channels (user_id);
 CREATE INDEX idx_subscriptions_subscriber ON subscriptions (subscriber_id);
-CREATE INDEX idx_subscriptions_channel ON subscriptions (channel_id);
+-- Покрывает и выборку по каналу, и keyset-обход подписчиков при рассылках
+CREATE INDEX idx_subscriptions_channel_subscriber ON subscriptions (channel_id, subscriber_id);
 
 CREATE INDEX idx_videos_channel_id ON videos (channel_id);
 CREATE INDEX idx_videos_status ON videos (status);
 CREATE INDEX idx_videos_visibility ON videos (visibility);
 CREATE INDEX idx_videos_published_at ON videos (published_at);
 CREATE INDEX idx_videos_view_count ON videos (view_count);
+CREATE INDEX idx_videos_channel_published ON videos (channel_id, published_at DESC, id DESC)
+    WHERE visibility = 'PUBLIC' AND status = 'READY';
+CREATE INDEX idx_videos_public_published ON videos (published_at DESC, id DESC)
+    WHERE visibility = 'PUBLIC' AND status = 'READY';
 
 CREATE INDEX idx_comments_video_id ON comments (video_id);
 CREATE INDEX idx_comments_user_id ON comments (user_id);
 CREATE INDEX idx_comments_parent_id ON comments (parent_comment_id);
 CREATE INDEX idx_comments_created_at ON comments (created_at);
+-- Keyset-пагинация корневых комментариев видео (новые сверху)
+CREATE INDEX idx_comments_video_root_created ON comments (video_id, created_at DESC, id DESC)
+    WHERE parent_comment_id IS NULL;
+CREATE INDEX idx_comments_video_root_top ON comments (video_id, is_pinned DESC, like_count DESC, created_at DESC, id DESC)
+    WHERE parent_comment_id IS NULL;
+CREATE INDEX idx_comments_thread_path ON comments (root_id, path);
+
+-- Не больше одного системного плейлиста каждого типа на пользователя
+CREATE UNIQUE INDEX idx_playlists_user_system ON playlists (user_id, system_type) WHERE system_type IS NOT NULL;
+-- Публичные плейлисты на странице канала, новые сверху
+CREATE INDEX idx_playlists_channel_created ON playlists (channel_id, created_at DESC)
+    WHERE channel_id IS NOT NULL AND visibility = 'PUBLIC';
+-- Keyset-пагинация и поиск соседей по позиции внутри плейлиста
+CREATE INDEX idx_playlist_videos_position ON playlist_videos (playlist_id, position, id);
+-- Плейлисты, содержащие видео: сброс окон "далее" при публикации/скрытии видео
+CREATE INDEX idx_playlist_videos_video ON playlist_videos (video_id);
+
+CREATE INDEX idx_notifications_user_id ON notifications (user_id, id DESC);
+CREATE INDEX idx_notification_fanout_jobs_open ON notification_fanout_jobs (id) WHERE status <> 'DONE';
 
 CREATE INDEX idx_video_views_video_id ON video_views (video_id);
-CREATE INDEX idx_video_views_viewed_at ON video_views (viewed_at);
+CREATE INDEX idx_video_views_viewed_at ON video_views USING BRIN (viewed_at);
 CREATE INDEX idx_video_views_user_id ON video_views (user_id);
 
 CREATE INDEX idx_daily_video_stats_video_date ON daily_video_stats (video_id, date);
@@ -339,6 +439,108 @@ CREATE TRIGGER create_channel_after_user_creation
     FOR EACH ROW
 EXECUTE FUNCTION create_channel_for_user();
 
+-- Постановка изменений в поисковый outbox
+CREATE OR REPLACE FUNCTION enqueue_video_search()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    INSERT INTO search_outbox (entity_type, entity_id)
+    VALUES ('VIDEO', CASE WHEN TG_OP = 'DELETE' THEN OLD.id ELSE NEW.id END);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER enqueue_video_search_on_change
+    AFTER INSERT OR DELETE
+    ON videos
+    FOR EACH ROW
+EXECUTE FUNCTION enqueue_video_search();
+
+-- view_count меняется постоянно, поэтому документ переиндексируется только при переходе
+-- в следующую "ступень" (~19% роста) - для буста популярности этого достаточно
+CREATE TRIGGER enqueue_video_search_on_update
+    AFTER UPDATE
+    ON videos
+    FOR EACH ROW
+    WHEN (OLD.title IS DISTINCT FROM NEW.title
+        OR OLD.description IS DISTINCT FROM NEW.description
+        OR OLD.duration_seconds IS DISTINCT FROM NEW.duration_seconds
+        OR OLD.status IS DISTINCT FROM NEW.status
+        OR OLD.visibility IS DISTINCT FROM NEW.visibility
+        OR OLD.published_at IS DISTINCT FROM NEW.published_at
+        OR OLD.channel_id IS DISTINCT FROM NEW.channel_id
+        OR floor(log(2, GREATEST(OLD.view_count, 1)) * 4) <> floor(log(2, GREATEST(NEW.view_count, 1)) * 4))
+EXECUTE FUNCTION enqueue_video_search();
+
+CREATE OR REPLACE FUNCTION enqueue_video_tags_search()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    INSERT INTO search_outbox (entity_type, entity_id)
+    VALUES ('VIDEO', CASE WHEN TG_OP = 'DELETE' THEN OLD.video_id ELSE NEW.video_id END);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER enqueue_video_tags_search_on_change
+    AFTER INSERT OR DELETE
+    ON video_tags
+    FOR EACH ROW
+EXECUTE FUNCTION enqueue_video_tags_search();
+
+-- Переименование тега меняет документы всех его видео
+CREATE OR REPLACE FUNCTION enqueue_tag_search()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    INSERT INTO search_outbox (entity_type, entity_id)
+    SELECT 'VIDEO', vt.video_id FROM video_tags vt WHERE vt.tag_id = NEW.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER enqueue_tag_search_on_rename
+    AFTER UPDATE OF name
+    ON tags
+    FOR EACH ROW
+    WHEN (OLD.name IS DISTINCT FROM NEW.name)
+EXECUTE FUNCTION enqueue_tag_search();
+
+-- Название канала денормализовано в документы его видео
+CREATE OR REPLACE FUNCTION enqueue_channel_search()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO search_outbox (entity_type, entity_id) VALUES ('CHANNEL', OLD.id);
+        RETURN NULL;
+    END IF;
+
+    INSERT INTO search_outbox (entity_type, entity_id) VALUES ('CHANNEL', NEW.id);
+    IF TG_OP = 'UPDATE' AND OLD.channel_name IS DISTINCT FROM NEW.channel_name THEN
+        INSERT INTO search_outbox (entity_type, entity_id)
+        SELECT 'VIDEO', v.id FROM videos v WHERE v.channel_id = NEW.id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER enqueue_channel_search_on_change
+    AFTER INSERT OR DELETE
+    ON channels
+    FOR EACH ROW
+EXECUTE FUNCTION enqueue_channel_search();
+
+CREATE TRIGGER enqueue_channel_search_on_update
+    AFTER UPDATE
+    ON channels
+    FOR EACH ROW
+    WHEN (OLD.channel_name IS DISTINCT FROM NEW.channel_name
+        OR OLD.description IS DISTINCT FROM NEW.description
+        OR OLD.video_count IS DISTINCT FROM NEW.video_count
+        OR floor(log(2, GREATEST(OLD.subscriber_count, 1)) * 4) <> floor(log(2, GREATEST(NEW.subscriber_count, 1)) * 4))
+EXECUTE FUNCTION enqueue_channel_search();
+
 -- Добавляем тестового администратора (пароль: admin123)
 INSERT INTO users (email, username, first_name, last_name, password_hash, role, is_email_verified, is_active)
 VALUES ('admin@mytube.com', 'admin', 'Admin', 'User', '$2a$10$rLFnQz8kDrB7mCOz7EYBj.5V9Zb7V1YZ8GYE3k4L2mVwN6YmZ8vYu',